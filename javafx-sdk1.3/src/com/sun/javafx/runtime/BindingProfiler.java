@@ -0,0 +1,365 @@
+/*
+ * Copyright 2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+
+package com.sun.javafx.runtime;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Counts binding events per var, to find the bound vars that thrash.
+ *
+ * Profiling is enabled by the system property
+ * {@code javafx.binding.profile=true}; when it is off, the only cost is a
+ * test of the constant {@link #enabled} at each hook.  The counters are:
+ * <ul>
+ * <li>per bindee (class, varNum): the invalidate and trigger notifications
+ *     sent to its dependents;
+ * <li>per binder (class, depNum): the {@code update$} calls delivered to
+ *     it, and the time spent in them (including any cascade they cause),
+ *     broken down by the bindee var that caused them;
+ * <li>per (class, varNum): the recomputations of a bound var in its
+ *     getter.  These are only counted in classes compiled with
+ *     {@code -XDprofileBindings}.
+ * </ul>
+ * Counters are kept per runtime class of the object, so vars inherited by
+ * several subclasses are reported once per subclass.
+ *
+ * The counters can be read through the {@link BindingProfilerMBean}, or
+ * written to a file with {@link #dump(String)}.  If the system property
+ * {@code javafx.binding.profileFile} names a file, they are also written
+ * there when the VM exits.
+ */
+public final class BindingProfiler {
+    /** Whether counters are being collected. */
+    public static final boolean enabled = Util.getBooleanProperty("javafx.binding.profile", false);
+
+    private static final String VOFF_PREFIX = "VOFF$";
+    private static final String DEP_PREFIX = "DEP$";
+
+    /** The counters of one var, or one dependency, of a class. */
+    static final class Site {
+        final Class<?> owner;
+        final int num;
+        final boolean isDep;
+        long invalidations, triggers, recomputes;
+        long updates, updateNanos;
+        /** For a dependency: update counts, by the bindee var that sent them. */
+        Map<Site, long[]> sources;
+        private String name;
+
+        Site(Class<?> owner, int num, boolean isDep) {
+            this.owner = owner;
+            this.num = num;
+            this.isDep = isDep;
+        }
+
+        long total() {
+            return invalidations + triggers + recomputes + updates;
+        }
+
+        /** The var or dependency name, from the class's VOFF$ or DEP$ fields. */
+        String name() {
+            if (name == null)
+                name = fieldName(owner, isDep ? DEP_PREFIX : VOFF_PREFIX, num);
+            return name;
+        }
+
+        /** A unique id, e.g. {@code pkg.Foo.x} or {@code pkg.Foo.DEP$$_$x}. */
+        String id() {
+            return owner.getName() + '.' + name();
+        }
+    }
+
+    private static final Object lock = new Object();
+    private static final Map<Class<?>, Site[]> vars = new HashMap<Class<?>, Site[]>();
+    private static final Map<Class<?>, Site[]> deps = new HashMap<Class<?>, Site[]>();
+
+    static {
+        if (enabled)
+            install();
+    }
+
+    private BindingProfiler() {
+    }
+
+    // -- Hooks
+
+    /** Called by DependentsManager.notifyDependents. */
+    static void notified(FXObject bindee, int varNum, int phase) {
+        synchronized (lock) {
+            Site site = site(vars, bindee.getClass(), varNum, false);
+            if ((phase & FXObject.PHASE_TRANS$PHASE) == FXObject.PHASE$INVALIDATE)
+                site.invalidations++;
+            else
+                site.triggers++;
+        }
+    }
+
+    /**
+     * Called after an {@code update$} delivered to binder for its depNum,
+     * because bindee's varNum changed, that started at {@code start}
+     * (a {@link System#nanoTime} value).
+     */
+    static void updated(FXObject binder, int depNum, FXObject bindee, int varNum, long start) {
+        long nanos = System.nanoTime() - start;
+        synchronized (lock) {
+            Site site = site(deps, binder.getClass(), depNum, true);
+            site.updates++;
+            site.updateNanos += nanos;
+            Site source = site(vars, bindee.getClass(), varNum, false);
+            if (site.sources == null)
+                site.sources = new IdentityHashMap<Site, long[]>();
+            long[] count = site.sources.get(source);
+            if (count == null)
+                site.sources.put(source, count = new long[1]);
+            count[0]++;
+        }
+    }
+
+    /**
+     * Called by the getter of a bound var, in classes compiled with
+     * {@code -XDprofileBindings}, each time it recomputes the value.
+     */
+    public static void recompute(FXObject obj, int varNum) {
+        if (!enabled)
+            return;
+        synchronized (lock) {
+            site(vars, obj.getClass(), varNum, false).recomputes++;
+        }
+    }
+
+    private static Site site(Map<Class<?>, Site[]> table, Class<?> owner, int num, boolean isDep) {
+        Site[] sites = table.get(owner);
+        if (sites == null || num >= sites.length) {
+            Site[] newSites = new Site[Math.max(num + 1, sites == null ? 8 : 2 * sites.length)];
+            if (sites != null)
+                System.arraycopy(sites, 0, newSites, 0, sites.length);
+            table.put(owner, sites = newSites);
+        }
+        Site site = sites[num];
+        if (site == null)
+            sites[num] = site = new Site(owner, num, isDep);
+        return site;
+    }
+
+    // -- Public interface
+
+    /** Clear all counters. */
+    public static void reset() {
+        synchronized (lock) {
+            vars.clear();
+            deps.clear();
+        }
+    }
+
+    /** Number of vars and dependencies with at least one event. */
+    public static int getSiteCount() {
+        return snapshot().size();
+    }
+
+    /**
+     * The busiest vars and dependencies, one line each, in decreasing
+     * order of total events.
+     */
+    public static String[] getHotSpots(int max) {
+        List<Site> sites = snapshot();
+        Collections.sort(sites, new Comparator<Site>() {
+            public int compare(Site a, Site b) {
+                long ta = a.total(), tb = b.total();
+                return ta > tb ? -1 : ta < tb ? 1 : 0;
+            }
+        });
+        int n = Math.min(Math.max(max, 0), sites.size());
+        String[] lines = new String[n];
+        for (int i = 0; i < n; i++) {
+            Site site = sites.get(i);
+            StringBuilder buf = new StringBuilder(site.id());
+            if (site.isDep) {
+                buf.append(": updates=").append(site.updates);
+                buf.append(" updateTime=").append(site.updateNanos / 1000).append("us");
+            } else {
+                buf.append(": invalidations=").append(site.invalidations);
+                buf.append(" triggers=").append(site.triggers);
+                buf.append(" recomputes=").append(site.recomputes);
+            }
+            lines[i] = buf.toString();
+        }
+        return lines;
+    }
+
+    /** Write the counters to the named file, in GXL format. */
+    public static void dump(String fileName) {
+        dump(new File(fileName));
+    }
+
+    /**
+     * Write the counters to the file, in GXL format.
+     *
+     * @see DependentsGraphWriter#writeBindingProfile
+     */
+    public static void dump(File file) {
+        DependentsGraphWriter.writeBindingProfile(snapshot(), file);
+    }
+
+    /**
+     * A copy of all sites with at least one event.  Dependency sources are
+     * copied too, and refer to the copies of the var sites.
+     */
+    static List<Site> snapshot() {
+        List<Site> res = new ArrayList<Site>();
+        synchronized (lock) {
+            Map<Site, Site> copies = new IdentityHashMap<Site, Site>();
+            for (Site[] sites : vars.values()) {
+                for (Site site : sites) {
+                    if (site != null && site.total() > 0) {
+                        Site copy = copy(site);
+                        copies.put(site, copy);
+                        res.add(copy);
+                    }
+                }
+            }
+            for (Site[] sites : deps.values()) {
+                for (Site site : sites) {
+                    if (site != null && site.total() > 0) {
+                        Site copy = copy(site);
+                        copy.sources = new IdentityHashMap<Site, long[]>();
+                        for (Map.Entry<Site, long[]> e : site.sources.entrySet()) {
+                            Site source = copies.get(e.getKey());
+                            if (source == null) {
+                                // Only updated since the var was last notified.
+                                source = copy(e.getKey());
+                                copies.put(e.getKey(), source);
+                                res.add(source);
+                            }
+                            copy.sources.put(source, new long[] { e.getValue()[0] });
+                        }
+                        res.add(copy);
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
+    private static Site copy(Site site) {
+        Site copy = new Site(site.owner, site.num, site.isDep);
+        copy.invalidations = site.invalidations;
+        copy.triggers = site.triggers;
+        copy.recomputes = site.recomputes;
+        copy.updates = site.updates;
+        copy.updateNanos = site.updateNanos;
+        copy.name = site.name;
+        return copy;
+    }
+
+    /** The name of var varNum of clazz, from its VOFF$ field. */
+    static String varName(Class<?> clazz, int varNum) {
+        return fieldName(clazz, VOFF_PREFIX, varNum);
+    }
+
+    /**
+     * Find the name of the static int field with the given prefix and value
+     * in clazz or a superclass, without the prefix for VOFF$ fields.
+     */
+    private static String fieldName(Class<?> clazz, String prefix, int value) {
+        try {
+            for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    String name = field.getName();
+                    if (name.startsWith(prefix) && field.getType() == int.class
+                            && (field.getModifiers() & Modifier.STATIC) != 0) {
+                        field.setAccessible(true);
+                        if (field.getInt(null) == value)
+                            return prefix == VOFF_PREFIX ? name.substring(prefix.length()) : name;
+                    }
+                }
+            }
+        } catch (Exception ignored) {
+            // Fall through to the numbered name.
+        }
+        return (prefix == VOFF_PREFIX ? "var#" : "dep#") + value;
+    }
+
+    // -- Management
+
+    private static final class MBean implements BindingProfilerMBean {
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public int getSiteCount() {
+            return BindingProfiler.getSiteCount();
+        }
+
+        public String[] getHotSpots(int max) {
+            return BindingProfiler.getHotSpots(max);
+        }
+
+        public void reset() {
+            BindingProfiler.reset();
+        }
+
+        public void dump(String fileName) {
+            BindingProfiler.dump(fileName);
+        }
+    }
+
+    /**
+     * Register the MBean and the exit dump.  Either may be unavailable
+     * (no JMX on this platform, or a security manager); profiling still
+     * works without them.
+     */
+    private static void install() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(new MBean(), BindingProfilerMBean.class),
+                    new ObjectName("com.sun.javafx.runtime:type=BindingProfiler"));
+        } catch (Throwable ignored) {
+        }
+        try {
+            final String fileName = System.getProperty("javafx.binding.profileFile");
+            if (fileName != null) {
+                Runtime.getRuntime().addShutdownHook(new Thread("JavaFX binding profile dump") {
+                    @Override
+                    public void run() {
+                        dump(fileName);
+                    }
+                });
+            }
+        } catch (SecurityException ignored) {
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.javafx.runtime;
+
+/**
+ * Packed dependency storage for a bindee with few dependents.
+ *
+ * Instead of a {@link Dep} per edge plus a trie node per bound varNum, all
+ * edges of the bindee are kept in two parallel arrays: {@code binders[i]}
+ * is the binder and {@code nums[2*i]}, {@code nums[2*i+1]} are the bindee
+ * varNum and the binder depNum.  When a CompactDepChain is installed it is
+ * the whole (root) DepChain of the bindee; none of the trie fields are used.
+ *
+ * Edges are not linked into the binder's {@code WeakBinderRef.bindees}
+ * chain.  Instead the binder's WeakBinderRef keeps the chain in
+ * {@code packedChains}, so that {@code WeakBinderRef.cleanup} can remove
+ * the edges of a collected binder.  Edges whose binder has been collected
+ * are also dropped when the bindee notifies them or needs the room.
+ *
+ * The order of notification is the same as for a Dep chain: most recently
+ * added first.  While a notification loop is running over this chain
+ * ({@code notifying > 0}) removed slots are only cleared, so indexes stay
+ * stable; the holes are squeezed out once the last loop exits.
+ */
+final class CompactDepChain extends DepChain {
+    /** Number of edges above which the bindee switches to the linked trie. */
+    static final int MAX_EDGES = 8;
+
+    WeakBinderRef[] binders;
+    int[] nums;
+    int count;
+    int holes;
+    int notifying;
+
+    CompactDepChain() {
+        binders = new WeakBinderRef[2];
+        nums = new int[4];
+    }
+
+    int varNum(int i) {
+        return nums[2*i];
+    }
+
+    int depNum(int i) {
+        return nums[2*i+1];
+    }
+
+    /**
+     * Add an edge.  Returns false if there is no room, in which case the
+     * caller should switch the bindee to the linked representation.
+     */
+    boolean add(WeakBinderRef binderRef, int varNum, int depNum) {
+        if (count == binders.length) {
+            if (notifying == 0) {
+                purge();
+                squeeze();
+            }
+            if (count == binders.length) {
+                if (count >= MAX_EDGES && notifying == 0)
+                    return false;
+                grow();
+            }
+        }
+        binders[count] = binderRef;
+        nums[2*count] = varNum;
+        nums[2*count+1] = depNum;
+        count++;
+        return true;
+    }
+
+    /** Find the most recently added edge matching varNum and binderRef, or -1. */
+    int indexOf(int varNum, WeakBinderRef binderRef) {
+        for (int i = count; --i >= 0; ) {
+            if (binders[i] == binderRef && nums[2*i] == varNum)
+                return i;
+        }
+        return -1;
+    }
+
+    /** Find the most recently added edge matching all of varNum, binderRef and depNum, or -1. */
+    int indexOf(int varNum, WeakBinderRef binderRef, int depNum) {
+        for (int i = count; --i >= 0; ) {
+            if (binders[i] == binderRef && nums[2*i] == varNum && nums[2*i+1] == depNum)
+                return i;
+        }
+        return -1;
+    }
+
+    void remove(int i) {
+        binders[i] = null;
+        holes++;
+        if (notifying == 0)
+            squeeze();
+    }
+
+    /** Called when a notification loop exits. */
+    void endNotify() {
+        if (--notifying == 0 && holes > 0)
+            squeeze();
+    }
+
+    /** Clear the slots of edges whose binder has been collected. */
+    private void purge() {
+        for (int i = 0; i < count; i++) {
+            WeakBinderRef ref = binders[i];
+            if (ref != null && ref.get() == null) {
+                binders[i] = null;
+                holes++;
+            }
+        }
+    }
+
+    /** Remove cleared slots, preserving the order of the live edges. */
+    private void squeeze() {
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            WeakBinderRef ref = binders[i];
+            if (ref != null) {
+                if (i != j) {
+                    binders[j] = ref;
+                    nums[2*j] = nums[2*i];
+                    nums[2*j+1] = nums[2*i+1];
+                }
+                j++;
+            }
+        }
+        for (int i = j; i < count; i++)
+            binders[i] = null;
+        count = j;
+        holes = 0;
+    }
+
+    private void grow() {
+        int newLength = 2 * binders.length;
+        WeakBinderRef[] newBinders = new WeakBinderRef[newLength];
+        int[] newNums = new int[2 * newLength];
+        System.arraycopy(binders, 0, newBinders, 0, count);
+        System.arraycopy(nums, 0, newNums, 0, 2 * count);
+        binders = newBinders;
+        nums = newNums;
+    }
+
+    /**
+     * Replace this chain with the linked trie representation.
+     * Must not be called while notifying.
+     */
+    void expand(FXObject bindee) {
+        assert notifying == 0;
+        WeakBinderRef[] oldBinders = binders;
+        int[] oldNums = nums;
+        int oldCount = count;
+        binders = new WeakBinderRef[0];
+        nums = new int[0];
+        count = holes = 0;
+        bindee.setDepChain$internal$(null);
+        // Link oldest first, so the most recent edge ends up at the head
+        // of its Dep chain, as if it had been linked all along.
+        for (int i = 0; i < oldCount; i++) {
+            WeakBinderRef ref = oldBinders[i];
+            FXObject binder = ref == null ? null : ref.get();
+            if (binder != null) {
+                Dep dep = Dep.newDependency(binder, oldNums[2*i+1]);
+                dep.linkToBindee(bindee, oldNums[2*i]);
+            }
+        }
+    }
+}
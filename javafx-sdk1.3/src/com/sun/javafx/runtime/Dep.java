@@ -0,0 +1,113 @@
+/*
+ * Copyright 2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.javafx.runtime;
+
+/** A dependency of a binder on a var of a bindee, linked into the chains of both. */
+class Dep implements BinderLinkable {
+    /* DEBUGGING
+    static int counter;
+    int id = ++counter;
+    public String toString() { return "Dep#"+id; }
+    */
+
+    WeakBinderRef binderRef;
+    Dep nextInBinders;
+
+    public void setNextBinder(Dep next) {
+        nextInBinders = next;
+    }
+
+    /** Back-pointer corresponding to nextInBinders.
+     * Either the previous Dep such that
+     * {@code ((Dep) prevInBinders).nextInBinders==this},
+     * or (if this is the first dep) the DepChain list head such that
+     * {@code ((DepChain) prevInBinders).dependencies==this}.
+     */
+    BinderLinkable prevInBinders;
+
+    Dep nextInBindees;
+    DepChain chain;
+
+    int depNum;
+
+    static Dep newDependency(FXObject binder, int depNum) {
+        Dep dep = new Dep();
+        dep.depNum = depNum;
+        WeakBinderRef binderRef = WeakBinderRef.instance(binder);
+        dep.binderRef = binderRef;
+        // Link into bindee chain of binderRef
+        Dep firstBindee = binderRef.bindees;
+        dep.nextInBindees = firstBindee;
+        binderRef.bindees = dep;
+        return dep;
+    }
+
+    void linkToBindee(FXObject bindee, int bindeeVarNum) {
+        WeakBinderRef bref = WeakBinderRef.instance(bindee);
+        DepChain chain = DepChain.findForce(bindeeVarNum, bindee.getDepChain$internal$(), bref);
+        // Link into binder chain of bindee
+        Dep firstBinder = chain.dependencies;
+        nextInBinders = firstBinder;
+        if (firstBinder != null) {
+            firstBinder.prevInBinders = this;
+        }
+        prevInBinders = chain;
+        chain.dependencies = this;
+        this.chain = chain;
+    }
+
+    /**
+     * Unlink from dependency chain of bindee.
+     */
+    void unlinkFromBindee() {
+        BinderLinkable prevBinder = prevInBinders;
+        if (prevBinder == null)
+            return;
+        // Note that removeDependent might call this method while
+        // notifyDependents is in the middle of a dependency chain.
+        // Since notifyDependents needs the nextInBinders field,
+        // we can't null it out, but it can be GC'd as soon as
+        // notifyDependents gets past this Dep.
+        // We do null out binderRef and prevInBinders to indicate
+        // that this Dep has already been unlinked.
+        binderRef = null;
+        prevInBinders = null;
+        Dep next = nextInBinders;
+        if (prevBinder instanceof DepChain) {
+            DepChain chain = (DepChain) prevBinder;
+            chain.dependencies = next;
+            if (next == null) {
+                if (chain.child0 == null)
+                    chain.replaceParent(chain.child1);
+                else if (chain.child1 == null)
+                    chain.replaceParent(chain.child0);
+            }
+        }
+        else
+            prevBinder.setNextBinder(next);
+        if (next != null) {
+            next.prevInBinders = prevBinder;
+        }
+    }
+}
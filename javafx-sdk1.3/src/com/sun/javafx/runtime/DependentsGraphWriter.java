@@ -96,6 +96,31 @@ public final class DependentsGraphWriter {
         depWriter.end();
     }
 
+    /**
+     * Writes the counters collected by {@link BindingProfiler} to the file
+     * in GXL format.  There is a node per var and per dependency, with the
+     * counters as attributes, and an edge from each bindee var to each
+     * dependency it sent updates to, labelled with the number of updates.
+     *
+     * @param sites The counters, as returned by {@code BindingProfiler.snapshot}
+     * @param file The file to which the profile is serialized
+     */
+    static void writeBindingProfile(List<BindingProfiler.Site> sites, File file) {
+        DependentsGraphWriter depWriter = new DependentsGraphWriter(file, false);
+        depWriter.start(file.getName());
+        for (BindingProfiler.Site site : sites) {
+            depWriter.writeSite(site);
+        }
+        for (BindingProfiler.Site site : sites) {
+            if (site.sources != null) {
+                for (Map.Entry<BindingProfiler.Site, long[]> entry : site.sources.entrySet()) {
+                    depWriter.writeUpdates(entry.getKey(), site, entry.getValue()[0]);
+                }
+            }
+        }
+        depWriter.end();
+    }
+
 
     // -- Internals only below this point
 
@@ -109,6 +134,7 @@ public final class DependentsGraphWriter {
     private static final String ATTR = "attr";
     private static final String STRING = "string";
     private static final String BOOL = "bool";
+    private static final String INT = "int";
 
     // GXL attribute names
     private static final String ID = "id";
@@ -126,6 +152,7 @@ public final class DependentsGraphWriter {
 
     // DOT "attr" names
     private static final String COLOR = "color";
+    private static final String LABEL = "label";
 
     // Values for edge "attr" s
     private static final String INTEROBJECT_EDGE_COLOR = "red";
@@ -248,6 +275,61 @@ public final class DependentsGraphWriter {
         endElement(EDGE);
     }
 
+    private void writeSite(BindingProfiler.Site site) {
+        attrs.clear();
+        attrs.addAttribute("", ID, ID, ATTR_ID, site.id());
+        startElement(NODE, attrs);
+            StringBuilder label = new StringBuilder(site.id());
+            if (site.isDep) {
+                writeAttr("updates", site.updates);
+                writeAttr("updateTime", site.updateNanos);
+                label.append("\\nupdates=").append(site.updates);
+                label.append(" time=").append(site.updateNanos / 1000).append("us");
+            } else {
+                writeAttr("invalidations", site.invalidations);
+                writeAttr("triggers", site.triggers);
+                writeAttr("recomputes", site.recomputes);
+                label.append("\\ninvalidations=").append(site.invalidations);
+                label.append(" triggers=").append(site.triggers);
+                label.append(" recomputes=").append(site.recomputes);
+            }
+            writeAttr(LABEL, label.toString());
+        endElement(NODE);
+    }
+
+    private void writeUpdates(BindingProfiler.Site bindeeVar, BindingProfiler.Site binderDep, long count) {
+        // write an edge from bindee var to binder dependency
+        attrs.clear();
+        attrs.addAttribute("", FROM, FROM, ATTR_IDREF, bindeeVar.id());
+        attrs.addAttribute("", TO, TO, ATTR_IDREF, binderDep.id());
+        startElement(EDGE, attrs);
+            writeAttr(LABEL, Long.toString(count));
+            if (bindeeVar.owner != binderDep.owner) {
+                writeAttr(COLOR, INTEROBJECT_EDGE_COLOR);
+            }
+        endElement(EDGE);
+    }
+
+    private void writeAttr(String name, long value) {
+        attrs.clear();
+        attrs.addAttribute("", NAME, NAME, ATTR_NMTOKEN, name);
+        startElement(ATTR, attrs);
+            startElement(INT);
+                emitData(Long.toString(value));
+            endElement(INT);
+        endElement(ATTR);
+    }
+
+    private void writeAttr(String name, String value) {
+        attrs.clear();
+        attrs.addAttribute("", NAME, NAME, ATTR_NMTOKEN, name);
+        startElement(ATTR, attrs);
+            startElement(STRING);
+                emitData(value);
+            endElement(STRING);
+        endElement(ATTR);
+    }
+
     private String id(FXObject obj) {
         StringBuilder buf = new StringBuilder();
         buf.append(obj.getClass().getName());
@@ -23,8 +23,15 @@
 
 package com.sun.javafx.runtime;
 
+import com.sun.javafx.runtime.sequence.BoundFor;
+import com.sun.javafx.runtime.sequence.Sequences;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 
 /**
  * Manages dependents of a particular FXObject.
@@ -32,14 +39,83 @@ import java.util.List;
  * @author A. Sundararajan
  */
 public final class DependentsManager {
+    /**
+     * Store the dependents of objects with few of them inline in a
+     * {@link SingleDepChain} or packed in a {@link CompactDepChain},
+     * instead of the linked Dep trie.
+     */
+    static final boolean compactDeps = Util.getBooleanProperty("javafx.binding.compactDeps", true);
+
+    /**
+     * Deliver trigger notifications in dependency-height order, once per
+     * edge per change wave, instead of depth-first in chain order.
+     */
+    static final boolean orderedPropagation = Util.getBooleanProperty("javafx.binding.ordered", false);
+
+    /**
+     * Deliver a whole-value invalidation of a bindee var at most once per
+     * invalidation cascade.
+     */
+    static final boolean coalesceInvalidations = Util.getBooleanProperty("javafx.binding.coalesce", false);
+
     public static void addDependent(FXObject bindee, final int varNum, FXObject binder, final int depNum) {
+        if (compactDeps) {
+            DepChain root = bindee.getDepChain$internal$();
+            if (root == null || (root instanceof SingleDepChain && ((SingleDepChain) root).binderRef == null)) {
+                WeakBinderRef binderRef = WeakBinderRef.instance(binder);
+                SingleDepChain single;
+                if (root == null) {
+                    single = new SingleDepChain(binderRef, varNum, depNum);
+                    bindee.setDepChain$internal$(single);
+                } else {
+                    single = (SingleDepChain) root;
+                    single.binderRef = binderRef;
+                    single.varNum = varNum;
+                    single.depNum = depNum;
+                }
+                binderRef.addPackedChain(single);
+                WeakBinderRef.checkForCleanups();
+                return;
+            }
+            if (root instanceof SingleDepChain) {
+                root = ((SingleDepChain) root).promote(bindee);
+            }
+            if (root instanceof CompactDepChain) {
+                CompactDepChain compact = (CompactDepChain) root;
+                WeakBinderRef binderRef = WeakBinderRef.instance(binder);
+                if (compact.add(binderRef, varNum, depNum)) {
+                    binderRef.addPackedChain(compact);
+                    WeakBinderRef.checkForCleanups();
+                    return;
+                }
+                compact.expand(bindee);
+            }
+        }
         Dep dep = Dep.newDependency(binder, depNum);
         dep.linkToBindee(bindee, varNum);
-        // FIXME: revisit this - is this a good time to call cleanup?
+        // Bounded, and a no-op when cleanup is deferred to the reaper.
         WeakBinderRef.checkForCleanups();
     }
 
     public static void removeDependent(FXObject bindee, final int varNum, FXObject binder) {
+        DepChain root = bindee.getDepChain$internal$();
+        if (root instanceof SingleDepChain) {
+            SingleDepChain single = (SingleDepChain) root;
+            WeakBinderRef binderRef = single.binderRef;
+            if (binderRef != null && single.varNum == varNum && binderRef.get() == binder)
+                removeSingle(bindee, single);
+            return;
+        }
+        if (root instanceof CompactDepChain) {
+            WeakBinderRef binderRef = binder.getThisRef$internal$();
+            if (binderRef == null)
+                return;
+            CompactDepChain compact = (CompactDepChain) root;
+            int i = compact.indexOf(varNum, binderRef);
+            if (i >= 0)
+                compact.remove(i);
+            return;
+        }
         // We need to find the "intersection Dep" between the Dep chain
         // associated with binder, and that associated with (bindee,varNum).
         // (Note that this manager is associated with bindee.)
@@ -51,7 +127,7 @@ public final class DependentsManager {
         // be fast.  An alternative is to store (bindee,varNum) in each Dep,
         // which would cost one more field per Dep (compared to storing
         // the DepChain).
-        DepChain chain = DepChain.find(varNum, bindee.getDepChain$internal$());
+        DepChain chain = DepChain.find(varNum, root);
         if (chain == null)
             return;
         Dep prev = null;
@@ -81,50 +157,748 @@ public final class DependentsManager {
     }
 
     public static void notifyDependents(FXObject bindee, final int varNum, int startPos, int endPos, int newLength, final int phase) {
-        DepChain chain = DepChain.find(varNum, bindee.getDepChain$internal$());
+        if (ParallelInvalidator.threshold > 0
+                && ParallelInvalidator.deferFromWorker(bindee, varNum, startPos, endPos, newLength, phase))
+            return;
+        if (coalesceInvalidations) {
+            if (!isInvalidate(phase)) {
+                // A trigger may have changed values read during the cascade.
+                forgetInvalidations();
+            } else if (startPos == 0 && endPos == Sequences.UNDEFINED_MARKER_INT
+                    && newLength == Sequences.UNDEFINED_MARKER_INT && !deferred(bindee, phase)) {
+                if (!guardedInvalidation(bindee, varNum) && !firstInvalidation(bindee, varNum))
+                    return;
+                cascadeDepth++;
+                try {
+                    propagate(bindee, varNum, startPos, endPos, newLength, phase);
+                } finally {
+                    if (--cascadeDepth == 0)
+                        forgetInvalidations();
+                }
+                return;
+            }
+        }
+        propagate(bindee, varNum, startPos, endPos, newLength, phase);
+    }
+
+    private static void propagate(FXObject bindee, final int varNum, int startPos, int endPos, int newLength, final int phase) {
+        if (BindingProfiler.enabled)
+            BindingProfiler.notified(bindee, varNum, phase);
+        if (orderedPropagation && batchDepth == 0 && !ordering) {
+            if (isInvalidate(phase)) {
+                // A new change wave: forget the heights of the previous one.
+                if (invalidating++ == 0)
+                    heights.clear();
+                try {
+                    notifyEdges(bindee, varNum, startPos, endPos, newLength, phase);
+                } finally {
+                    invalidating--;
+                }
+            } else {
+                ordering = true;
+                try {
+                    notifyEdges(bindee, varNum, startPos, endPos, newLength, phase);
+                    deliverTriggers();
+                } finally {
+                    ordering = false;
+                    pendingTrigger.clear();
+                    orderedTriggers.clear();
+                    heights.clear();
+                }
+            }
+            return;
+        }
+        notifyEdges(bindee, varNum, startPos, endPos, newLength, phase);
+    }
+
+    private static void notifyEdges(FXObject bindee, final int varNum, int startPos, int endPos, int newLength, final int phase) {
+        DepChain root = bindee.getDepChain$internal$();
+        if (root instanceof SingleDepChain) {
+            SingleDepChain single = (SingleDepChain) root;
+            WeakBinderRef binderRef = single.binderRef;
+            if (binderRef != null && single.varNum == varNum) {
+                if (deferred(bindee, phase))
+                    enqueue(binderRef, single.depNum, bindee, varNum, null, startPos, endPos, newLength, phase);
+                else
+                    dispatch(single, bindee, startPos, endPos, newLength, phase);
+            }
+            return;
+        }
+        if (root instanceof CompactDepChain) {
+            notifyCompact((CompactDepChain) root, bindee, varNum, startPos, endPos, newLength, phase);
+            return;
+        }
+        DepChain chain = DepChain.find(varNum, root);
         if (chain == null)
             return;
+        if (ParallelInvalidator.threshold > 0 && isInvalidate(phase) && !deferred(bindee, phase)
+                && fanOut(chain, bindee, startPos, endPos, newLength, phase))
+            return;
         for (Dep dep = chain.dependencies; dep != null;) {
             Dep next = dep.nextInBinders;
+            if (deferred(bindee, phase)) {
+                WeakBinderRef binderRef = dep.binderRef;
+                if (binderRef != null)
+                    enqueue(binderRef, dep.depNum, bindee, varNum, dep, startPos, endPos, newLength, phase);
+            } else
+                dispatch(dep, bindee, startPos, endPos, newLength, phase);
+            dep = next;
+        }
+    }
+
+    private static void notifyCompact(CompactDepChain compact, FXObject bindee, final int varNum, int startPos, int endPos, int newLength, final int phase) {
+        compact.notifying++;
+        try {
+            // Edges added by the updates go above count, and are not visited.
+            for (int i = compact.count; --i >= 0; ) {
+                WeakBinderRef binderRef = compact.binders[i];
+                if (binderRef == null || compact.varNum(i) != varNum)
+                    continue;
+                if (deferred(bindee, phase))
+                    enqueue(binderRef, compact.depNum(i), bindee, varNum, null, startPos, endPos, newLength, phase);
+                else
+                    dispatch(compact, i, bindee, startPos, endPos, newLength, phase);
+            }
+        } finally {
+            compact.endNotify();
+        }
+    }
+
+    /**
+     * Deliver a single notification to the binder of the given Dep.
+     */
+    private static void dispatch(Dep dep, FXObject bindee, int startPos, int endPos, int newLength, final int phase) {
+        WeakBinderRef binderRef = dep.binderRef;
+        // Note that unlinkFromBindee might have been called earlier
+        // on Dep, in which case binderRef will be null.  In that case,
+        // we don't need to do anything, except move on to the next Dep.
+        if (binderRef == null)
+            return;
+        FXObject binder = binderRef.get();
+        if (binder == null) {
+            binderRef.cleanup();
+            return;
+        }
+        if (!update(binder, bindee, dep.chain.bindeeVarNum, dep.depNum, startPos, endPos, newLength, phase))
+            unlink(dep);
+    }
+
+    /** Remove a Dep from both its binder's and its bindee's chains. */
+    private static void unlink(Dep dep) {
+        WeakBinderRef binderRef = dep.binderRef;
+        if (binderRef == null)
+            return;
+        Dep prev = null;
+        for (Dep d = binderRef.bindees; d != null; ) {
+            Dep nextInBindees = d.nextInBindees;
+            if (d == dep) {
+                if (prev == null)
+                    binderRef.bindees = nextInBindees;
+                else
+                    prev.nextInBindees = nextInBindees;
+                dep.unlinkFromBindee();
+                break;
+            }
+            prev = d;
+            d = nextInBindees;
+        }
+    }
+
+    /**
+     * Invalidate a long chain whose dependents are mostly {@link SideEffectFree}
+     * with {@link ParallelInvalidator}.  The other dependents are updated
+     * first, in chain order, on this thread.  Returns false, having done
+     * nothing, if the chain does not qualify.
+     */
+    private static boolean fanOut(DepChain chain, FXObject bindee, int startPos, int endPos, int newLength, final int phase) {
+        int threshold = ParallelInvalidator.threshold;
+        int n = 0;
+        for (Dep dep = chain.dependencies; dep != null && n < threshold; dep = dep.nextInBinders)
+            n++;
+        if (n < threshold)
+            return false;
+        n = 0;
+        for (Dep dep = chain.dependencies; dep != null; dep = dep.nextInBinders) {
             WeakBinderRef binderRef = dep.binderRef;
-            // Note that unlinkFromBindee might have been called earlier
-            // on Dep, in which case binderRef will be null.  In that case,
-            // we don't need to do anything, except move on to the next Dep.
-            if (binderRef != null) {
-                FXObject binder = binderRef.get();
-                if (binder == null) {
-                    binderRef.cleanup();
-                } else {
-                     boolean handled = true;
-                    try {
-                        handled = binder.update$(bindee, dep.depNum, startPos, endPos, newLength, phase);
-                    } catch (RuntimeException re) {
-                        ErrorHandler.bindException(re);
-                    }
-                    if (!handled) {
-                        Dep prev = null;
-                        for (Dep d = binderRef.bindees; d != null; ) {
-                            Dep nextInBindees = d.nextInBindees;
-                            if (d == dep) {
-                                if (prev == null)
-                                    binderRef.bindees = nextInBindees;
-                                else
-                                    prev.nextInBindees = nextInBindees;
-                                dep.unlinkFromBindee();
-                                break;
-                            }
-                            prev = d;
-                            d = nextInBindees;
-                        }
-                    }
+            if (binderRef != null && binderRef.get() instanceof SideEffectFree)
+                n++;
+        }
+        if (n < threshold)
+            return false;
+        Dep[] deps = new Dep[n];
+        FXObject[] binders = new FXObject[n];
+        n = 0;
+        for (Dep dep = chain.dependencies; dep != null;) {
+            Dep next = dep.nextInBinders;
+            WeakBinderRef binderRef = dep.binderRef;
+            FXObject binder = binderRef == null ? null : binderRef.get();
+            if (binder instanceof SideEffectFree && n < deps.length) {
+                if (orderedPropagation)
+                    recordEdge(bindee, binder);
+                deps[n] = dep;
+                binders[n++] = binder;
+            } else
+                dispatch(dep, bindee, startPos, endPos, newLength, phase);
+            dep = next;
+        }
+        boolean[] unhandled = ParallelInvalidator.invalidate(bindee, chain.bindeeVarNum, deps, binders, n, startPos, endPos, newLength, phase);
+        if (unhandled == null) {
+            for (int i = 0; i < n; i++)
+                dispatch(deps[i], bindee, startPos, endPos, newLength, phase);
+        } else {
+            for (int i = 0; i < n; i++) {
+                if (unhandled[i])
+                    unlink(deps[i]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Deliver a single notification to the binder of edge i of a compact chain.
+     * The caller must hold {@code compact.notifying}.
+     */
+    private static void dispatch(CompactDepChain compact, int i, FXObject bindee, int startPos, int endPos, int newLength, final int phase) {
+        FXObject binder = compact.binders[i].get();
+        if (binder == null || !update(binder, bindee, compact.varNum(i), compact.depNum(i), startPos, endPos, newLength, phase)) {
+            // A concurrent removeDependent may already have cleared the slot.
+            if (compact.binders[i] != null)
+                compact.remove(i);
+        }
+    }
+
+    /**
+     * Deliver a notification to the binder of a single-edge chain.
+     */
+    private static void dispatch(SingleDepChain single, FXObject bindee, int startPos, int endPos, int newLength, final int phase) {
+        WeakBinderRef binderRef = single.binderRef;
+        FXObject binder = binderRef.get();
+        if (binder == null || !update(binder, bindee, single.varNum, single.depNum, startPos, endPos, newLength, phase)) {
+            // The update may have removed the edge, or promoted the chain.
+            DepChain root = bindee.getDepChain$internal$();
+            if (root == single) {
+                if (single.binderRef == binderRef)
+                    removeSingle(bindee, single);
+            } else if (root instanceof CompactDepChain) {
+                CompactDepChain compact = (CompactDepChain) root;
+                int i = compact.indexOf(single.varNum, binderRef, single.depNum);
+                if (i >= 0)
+                    compact.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Remove the edges to the binder of binderRef that are kept in a packed
+     * chain.  Called when the binder has been collected.
+     */
+    static void removePackedEdges(DepChain chain, WeakBinderRef binderRef) {
+        if (chain instanceof SingleDepChain) {
+            SingleDepChain single = (SingleDepChain) chain;
+            if (single.binderRef == binderRef)
+                single.binderRef = null;
+        } else if (chain instanceof CompactDepChain) {
+            CompactDepChain compact = (CompactDepChain) chain;
+            for (int i = compact.count; --i >= 0; ) {
+                if (compact.binders[i] == binderRef)
+                    compact.remove(i);
+            }
+        }
+    }
+
+    /** Whether a packed chain holds an edge to the binder of binderRef. */
+    static boolean hasPackedEdge(DepChain chain, WeakBinderRef binderRef) {
+        if (chain instanceof SingleDepChain)
+            return ((SingleDepChain) chain).binderRef == binderRef;
+        if (chain instanceof CompactDepChain) {
+            CompactDepChain compact = (CompactDepChain) chain;
+            for (int i = compact.count; --i >= 0; ) {
+                if (compact.binders[i] == binderRef)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static void removeSingle(FXObject bindee, SingleDepChain single) {
+        single.binderRef = null;
+        bindee.setDepChain$internal$(null);
+    }
+
+    private static boolean update(FXObject binder, FXObject bindee, int varNum, int depNum, int startPos, int endPos, int newLength, final int phase) {
+        if (orderedPropagation && isInvalidate(phase))
+            recordEdge(bindee, binder);
+        long start = BindingProfiler.enabled ? System.nanoTime() : 0L;
+        try {
+            return binder.update$(bindee, depNum, startPos, endPos, newLength, phase);
+        } catch (RuntimeException re) {
+            ErrorHandler.bindException(re);
+            return true;
+        } finally {
+            if (BindingProfiler.enabled)
+                BindingProfiler.updated(binder, depNum, bindee, varNum, start);
+        }
+    }
+
+    // Invalidation coalescing.
+    //
+    // The generated invalidate$ of a var only notifies its dependents when
+    // the var goes from valid to invalid, so a var reached again by the same
+    // cascade stops there.  Bindees without that guard (FXConstant, or
+    // FXObjects written in Java) notify every time, and each of their
+    // dependents is walked again.  With javafx.binding.coalesce set, the
+    // whole-value invalidations of each (bindee, varNum) are remembered
+    // from the outermost one until it returns, and repeats are dropped.
+    // Sequence invalidations carry a changed range and are always
+    // delivered.  So are triggers, which also clear the memory: a trigger
+    // inside a cascade means a value was assigned, and vars that were read
+    // since may have become valid again.
+    //
+    // A var with state flags is taken to be guarded, and is not remembered:
+    // its invalid bit is set by the invalidate$ that notifies, so repeats
+    // never get here.  The bit can't be used to drop repeats instead, since
+    // by the time notifyDependents is called it is set for the first
+    // invalidation as well.
+
+    private static int cascadeDepth;
+    /** The bindee var of the outermost invalidation, kept out of the map. */
+    private static FXObject cascadeBindee;
+    private static int cascadeVarNum;
+    /** Bit sets of the other vars invalidated in this cascade, by bindee. */
+    private static Map<FXObject, long[]> cascadeSeen = new IdentityHashMap<FXObject, long[]>();
+
+    /**
+     * Record an invalidation of bindee's varNum.  Returns false if it has
+     * already been delivered in this cascade.
+     */
+    private static boolean firstInvalidation(FXObject bindee, int varNum) {
+        if (cascadeDepth == 0) {
+            cascadeBindee = bindee;
+            cascadeVarNum = varNum;
+            return true;
+        }
+        if (bindee == cascadeBindee && varNum == cascadeVarNum)
+            return false;
+        int word = varNum >>> 6;
+        long bit = 1L << varNum;
+        long[] seen = cascadeSeen.get(bindee);
+        if (seen == null || seen.length <= word) {
+            long[] newSeen = new long[word + 1];
+            if (seen != null)
+                System.arraycopy(seen, 0, newSeen, 0, seen.length);
+            cascadeSeen.put(bindee, seen = newSeen);
+        } else if ((seen[word] & bit) != 0)
+            return false;
+        seen[word] |= bit;
+        return true;
+    }
+
+    /**
+     * Whether bindee keeps the invalid state bit of varNum, and so only
+     * notifies the var's dependents when it goes from valid to invalid.
+     */
+    private static boolean guardedInvalidation(FXObject bindee, int varNum) {
+        return (bindee.getFlags$(varNum) & FXObject.VFLGS$INVALID_STATE_BIT) != 0;
+    }
+
+    private static void forgetInvalidations() {
+        cascadeBindee = null;
+        int size = cascadeSeen.size();
+        if (size > 256)
+            // Don't keep paying for clearing a table grown by one big cascade.
+            cascadeSeen = new IdentityHashMap<FXObject, long[]>();
+        else if (size > 0)
+            cascadeSeen.clear();
+    }
+
+    // Batched notification.
+    //
+    // Between beginBatch and the matching (outermost) endBatch, notifyDependents
+    // does not call update$ directly.  Instead each notification is queued
+    // per edge (binder, depNum, bindee, varNum), and an edge that is already
+    // pending in the same phase is merged rather than queued again: a whole
+    // value is notified once however often it was assigned, and the
+    // sequence changes of an edge are composed into one exact replacement
+    // (see PendingUpdate.merge).  On commit the changed bindee vars are
+    // taken in the order they were first notified, and the edges of each
+    // are invalidated and then triggered, just as if that var had been
+    // assigned once outside a batch.  Delivering all the invalidations of
+    // the batch before any trigger would instead let a bound
+    // for-expression see its parts change after it has already rebuilt
+    // them for the new sequence.  What the updates notify in turn is delivered
+    // right away, as outside a batch, so a binder that relies on seeing its
+    // own cascade synchronously (a bound for-expression rebuilding its
+    // parts) behaves as usual; with ordered propagation each trigger and
+    // the triggers it causes go through the height-ordered queue.
+    //
+    // So what is coalesced is the notifications per edge: a binder that
+    // depends on several changed vars is still updated once for each of
+    // them, and sees the final values of all of them the first time.  And only notifications that go through here are batched: a
+    // bind on a var of the same script or object is invalidated by the
+    // generated code directly, and is updated as soon as the var is
+    // assigned.
+    //
+    // Like the rest of the binding runtime this is not thread-safe; batches
+    // are expected to be used from the thread that owns the bindees.
+
+    private static int batchDepth;
+    private static boolean committing;
+
+    /** Edges invalidated in this batch, not delivered yet. */
+    private static final Map<PendingUpdate, PendingUpdate> batchInvalid = new HashMap<PendingUpdate, PendingUpdate>();
+    /** Edges triggered in this batch, not delivered yet. */
+    private static final Map<PendingUpdate, PendingUpdate> batchTrigger = new HashMap<PendingUpdate, PendingUpdate>();
+
+    /**
+     * Queued invalidations, with those of each bindee var kept together,
+     * and the last of them for each var.
+     */
+    private static PendingUpdate invalidateHead, invalidateTail;
+    private static final Map<BatchVar, PendingUpdate> varTails = new HashMap<BatchVar, PendingUpdate>();
+    private static PendingUpdate triggerHead, triggerTail;
+
+    /** A bindee var, as a key. */
+    private static final class BatchVar {
+        final FXObject bindee;
+        final int varNum;
+
+        BatchVar(FXObject bindee, int varNum) {
+            this.bindee = bindee;
+            this.varNum = varNum;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof BatchVar && ((BatchVar) obj).bindee == bindee && ((BatchVar) obj).varNum == varNum;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(bindee) * 31 + varNum;
+        }
+    }
+
+    /**
+     * Start a batch of changes.  Batches nest; notifications are delivered
+     * when the outermost batch is ended.  Callers should pair this with
+     * {@link #endBatch} in a {@code finally} block.
+     */
+    public static void beginBatch() {
+        batchDepth++;
+    }
+
+    /**
+     * End a batch of changes.  Ending the outermost batch delivers all
+     * coalesced notifications.
+     */
+    public static void endBatch() {
+        if (batchDepth <= 0)
+            throw new IllegalStateException("endBatch without matching beginBatch");
+        if (batchDepth > 1 || committing) {
+            batchDepth--;
+            return;
+        }
+        committing = true;
+        boolean wasOrdering = ordering;
+        // Cascaded triggers go through the height-ordered queue.
+        if (orderedPropagation)
+            ordering = true;
+        try {
+            commit();
+        } finally {
+            committing = false;
+            ordering = wasOrdering;
+            batchDepth--;
+            batchInvalid.clear();
+            batchTrigger.clear();
+            invalidateHead = invalidateTail = null;
+            varTails.clear();
+            triggerHead = triggerTail = null;
+            pendingTrigger.clear();
+            orderedTriggers.clear();
+            if (!ordering)
+                heights.clear();
+        }
+    }
+
+    /** Are notifications currently being batched? */
+    public static boolean isBatching() {
+        return batchDepth > 0;
+    }
+
+    private static boolean isInvalidate(int phase) {
+        return (phase & FXObject.PHASE_TRANS$PHASE) == FXObject.PHASE$INVALIDATE;
+    }
+
+    /** Are notifications being recorded for the commit of a batch? */
+    private static boolean batching(FXObject bindee) {
+        // The parts of a bound for-expression notify it while it updates
+        // them, and it expects those notifications synchronously.
+        return batchDepth > 0 && !committing && !(bindee instanceof BoundFor.FXForPart);
+    }
+
+    /** Should a notification from bindee in this phase be queued rather than delivered now? */
+    private static boolean deferred(FXObject bindee, int phase) {
+        return batching(bindee) || (ordering && !isInvalidate(phase));
+    }
+
+    private static void enqueue(WeakBinderRef binderRef, int depNum, FXObject bindee, int varNum, Dep dep,
+            int startPos, int endPos, int newLength, final int phase) {
+        boolean invalidate = isInvalidate(phase);
+        boolean batch = batching(bindee);
+        Map<PendingUpdate, PendingUpdate> pending = !batch ? pendingTrigger : invalidate ? batchInvalid : batchTrigger;
+        PendingUpdate update = new PendingUpdate(binderRef, depNum, bindee, varNum, dep, startPos, endPos, newLength, phase);
+        PendingUpdate old = pending.get(update);
+        if (old != null) {
+            old.merge(startPos, endPos, newLength);
+            return;
+        }
+        pending.put(update, update);
+        if (!batch) {
+            // An ordered trigger.
+            FXObject binder = binderRef.get();
+            update.height = binder == null ? 0 : recordEdge(bindee, binder);
+            update.seq = ++triggerSeq;
+            orderedTriggers.offer(update);
+        } else if (invalidate) {
+            PendingUpdate tail = varTails.put(new BatchVar(bindee, varNum), update);
+            if (tail != null) {
+                update.next = tail.next;
+                tail.next = update;
+                if (invalidateTail == tail)
+                    invalidateTail = update;
+            } else if (invalidateTail == null) {
+                invalidateHead = invalidateTail = update;
+            } else {
+                invalidateTail.next = update;
+                invalidateTail = update;
+            }
+        } else {
+            if (triggerTail == null)
+                triggerHead = update;
+            else
+                triggerTail.next = update;
+            triggerTail = update;
+        }
+    }
+
+    /**
+     * Deliver the notifications of a batch: for each bindee var in the order
+     * it was first invalidated, the invalidations of its edges, then their
+     * triggers; then any trigger without an invalidation.
+     */
+    private static void commit() {
+        for (PendingUpdate first = invalidateHead; first != null; ) {
+            PendingUpdate end = first.next;
+            while (end != null && end.bindee == first.bindee && end.varNum == first.varNum)
+                end = end.next;
+            if (orderedPropagation)
+                // A new change wave: forget the heights of the previous one.
+                heights.clear();
+            for (PendingUpdate update = first; update != end; update = update.next) {
+                batchInvalid.remove(update);
+                dispatch(update);
+            }
+            for (PendingUpdate update = first; update != end; update = update.next) {
+                PendingUpdate trigger = batchTrigger.remove(update);
+                if (trigger != null)
+                    queueTrigger(trigger);
+            }
+            deliverTriggers();
+            first = end;
+        }
+        for (PendingUpdate update = triggerHead; update != null; update = update.next) {
+            if (batchTrigger.remove(update) != null) {
+                queueTrigger(update);
+                deliverTriggers();
+            }
+        }
+    }
+
+    /** A trigger recorded by a batch is due: deliver it, or queue it in height order. */
+    private static void queueTrigger(PendingUpdate update) {
+        if (!orderedPropagation) {
+            dispatch(update);
+            return;
+        }
+        FXObject binder = update.binderRef.get();
+        update.height = binder == null ? 0 : recordEdge(update.bindee, binder);
+        update.seq = ++triggerSeq;
+        pendingTrigger.put(update, update);
+        orderedTriggers.offer(update);
+    }
+
+    /** Deliver the queued ordered triggers, and those they cause. */
+    private static void deliverTriggers() {
+        for (PendingUpdate update; (update = nextTrigger()) != null; )
+            dispatch(update);
+    }
+
+    /** Dequeue the next ordered trigger to deliver, or null if there is none. */
+    private static PendingUpdate nextTrigger() {
+        PendingUpdate update;
+        for (;;) {
+            update = orderedTriggers.poll();
+            if (update == null)
+                return null;
+            // The binder may have been found to be higher since this was queued.
+            FXObject binder = update.binderRef.get();
+            int height = binder == null ? 0 : heightOf(binder);
+            if (height <= update.height)
+                break;
+            update.height = height;
+            orderedTriggers.offer(update);
+        }
+        pendingTrigger.remove(update);
+        return update;
+    }
+
+    /** Deliver a queued notification, if its edge still exists. */
+    private static void dispatch(PendingUpdate update) {
+        FXObject bindee = update.bindee;
+        DepChain root = bindee.getDepChain$internal$();
+        if (root instanceof SingleDepChain) {
+            SingleDepChain single = (SingleDepChain) root;
+            if (single.binderRef == update.binderRef && single.varNum == update.varNum && single.depNum == update.depNum)
+                dispatch(single, bindee, update.startPos, update.endPos, update.newLength, update.phase);
+            return;
+        }
+        if (root instanceof CompactDepChain) {
+            CompactDepChain compact = (CompactDepChain) root;
+            int i = compact.indexOf(update.varNum, update.binderRef, update.depNum);
+            if (i >= 0) {
+                compact.notifying++;
+                try {
+                    dispatch(compact, i, bindee, update.startPos, update.endPos, update.newLength, update.phase);
+                } finally {
+                    compact.endNotify();
                 }
             }
-            dep = next;
+            return;
+        }
+        Dep dep = update.dep;
+        if (dep == null) {
+            // Queued while the bindee was single or compact; it has since been expanded.
+            DepChain chain = DepChain.find(update.varNum, root);
+            if (chain == null)
+                return;
+            for (dep = update.binderRef.bindees; dep != null; dep = dep.nextInBindees) {
+                if (dep.chain == chain && dep.depNum == update.depNum)
+                    break;
+            }
+            if (dep == null)
+                return;
+        }
+        dispatch(dep, bindee, update.startPos, update.endPos, update.newLength, update.phase);
+    }
+
+    // Ordered (glitch-free) propagation.
+    //
+    // With javafx.binding.ordered set, invalidations are still delivered
+    // depth-first, but every edge they travel is recorded, together with
+    // the dependency height of its endpoints: a bindee not reached by the
+    // wave has height 0, and a binder is one higher than its highest
+    // bindee.  The outermost trigger notification does not call update$
+    // directly; it and every trigger caused by the updates are queued (and
+    // merged per edge, as in a batch) and delivered lowest height first.
+    // So a binder that depends on several changed values is triggered only
+    // after all of them have been recomputed, and never sees a mix of old
+    // and new values.  When a batch commits, each recorded trigger is
+    // delivered through the same queue.
+
+    private static boolean ordering;
+    private static int invalidating;
+    private static int triggerSeq;
+
+    /** Triggers in orderedTriggers, by edge, so a second one for the same edge is merged. */
+    private static final Map<PendingUpdate, PendingUpdate> pendingTrigger = new HashMap<PendingUpdate, PendingUpdate>();
+
+    private static final Map<FXObject, HeightNode> heights = new IdentityHashMap<FXObject, HeightNode>();
+
+    private static final PriorityQueue<PendingUpdate> orderedTriggers = new PriorityQueue<PendingUpdate>(64,
+        new Comparator<PendingUpdate>() {
+            public int compare(PendingUpdate a, PendingUpdate b) {
+                if (a.height != b.height)
+                    return a.height < b.height ? -1 : 1;
+                // Same height: keep the order in which they were queued.
+                return a.seq - b.seq;
+            }
+        });
+
+    private static final class HeightNode {
+        int height;
+        HeightNode[] successors;
+        int successorCount;
+
+        void addSuccessor(HeightNode node) {
+            for (int i = successorCount; --i >= 0; ) {
+                if (successors[i] == node)
+                    return;
+            }
+            if (successors == null)
+                successors = new HeightNode[2];
+            else if (successorCount == successors.length) {
+                HeightNode[] newSuccessors = new HeightNode[2 * successorCount];
+                System.arraycopy(successors, 0, newSuccessors, 0, successorCount);
+                successors = newSuccessors;
+            }
+            successors[successorCount++] = node;
         }
     }
 
+    private static HeightNode heightNode(FXObject obj) {
+        HeightNode node = heights.get(obj);
+        if (node == null) {
+            node = new HeightNode();
+            heights.put(obj, node);
+        }
+        return node;
+    }
+
+    private static int heightOf(FXObject obj) {
+        HeightNode node = heights.get(obj);
+        return node == null ? 0 : node.height;
+    }
+
+    /** Record an edge of the current wave, and return the binder's height. */
+    private static int recordEdge(FXObject bindee, FXObject binder) {
+        HeightNode from = heightNode(bindee);
+        HeightNode to = heightNode(binder);
+        from.addSuccessor(to);
+        raise(to, from.height + 1);
+        return to.height;
+    }
+
+    /**
+     * Raise the height of a node, and of everything recorded downstream of it.
+     * No path in an acyclic graph is longer than its node count, so that
+     * bound also stops the recursion on a cycle.
+     */
+    private static void raise(HeightNode node, int height) {
+        if (node.height >= height || height > heights.size())
+            return;
+        node.height = height;
+        for (int i = 0; i < node.successorCount; i++)
+            raise(node.successors[i], height + 1);
+    }
+
     public static int getListenerCount(FXObject bindee) {
-        return getListenerCount(bindee.getDepChain$internal$());
+        DepChain root = bindee.getDepChain$internal$();
+        if (root instanceof SingleDepChain) {
+            WeakBinderRef binderRef = ((SingleDepChain) root).binderRef;
+            return binderRef != null && binderRef.get() != null ? 1 : 0;
+        }
+        if (root instanceof CompactDepChain) {
+            CompactDepChain compact = (CompactDepChain) root;
+            int count = 0;
+            for (int i = 0; i < compact.count; i++) {
+                WeakBinderRef binderRef = compact.binders[i];
+                if (binderRef != null && binderRef.get() != null)
+                    count++;
+            }
+            return count;
+        }
+        return getListenerCount(root);
     }
 
     private static int getListenerCount(DepChain chain) {
@@ -145,7 +919,22 @@ public final class DependentsManager {
 
     public static List<FXObject> getDependents(FXObject bindee) {
         List<FXObject> res = new ArrayList<FXObject>();
-        getDependents(bindee.getDepChain$internal$(), res);
+        DepChain root = bindee.getDepChain$internal$();
+        if (root instanceof SingleDepChain) {
+            WeakBinderRef binderRef = ((SingleDepChain) root).binderRef;
+            FXObject binder = binderRef == null ? null : binderRef.get();
+            if (binder != null)
+                res.add(binder);
+        } else if (root instanceof CompactDepChain) {
+            CompactDepChain compact = (CompactDepChain) root;
+            for (int i = 0; i < compact.count; i++) {
+                WeakBinderRef binderRef = compact.binders[i];
+                FXObject binder = binderRef == null ? null : binderRef.get();
+                if (binder != null)
+                    res.add(binder);
+            }
+        } else
+            getDependents(root, res);
         return res;
     }
 
@@ -166,98 +955,87 @@ public final class DependentsManager {
     }
 }
 
-interface BinderLinkable {
-    void setNextBinder(Dep next);
-};
-
-
-
-class Dep implements BinderLinkable {
-    /* DEBUGGING
-    static int counter;
-    int id = ++counter;
-    public String toString() { return "Dep#"+id; }
-    */
-
-    WeakBinderRef binderRef;
-    Dep nextInBinders;
-
-    public void setNextBinder(Dep next) {
-        nextInBinders = next;
-    }
-
-    /** Back-pointer corresponding to nextInBinders.
-     * Either the previous Dep such that
-     * {@code ((Dep) prevInBinders).nextInBinders==this},
-     * or (if this is the first dep) the DepChain list head such that
-     * {@code ((DepChain) prevInBinders).dependencies==this}.
-     */
-    BinderLinkable prevInBinders;
-
-    Dep nextInBindees;
-    DepChain chain;
-
-    int depNum;
-
-    static Dep newDependency(FXObject binder, int depNum) {
-        Dep dep = new Dep();
-        dep.depNum = depNum;
-        WeakBinderRef binderRef = WeakBinderRef.instance(binder);
-        dep.binderRef = binderRef;
-        // Link into bindee chain of binderRef
-        Dep firstBindee = binderRef.bindees;
-        dep.nextInBindees = firstBindee;
-        binderRef.bindees = dep;
-        return dep;
-    }
+/**
+ * A notification queued by DependentsManager while batching.
+ * Two PendingUpdates are equal if they are for the same edge.
+ */
+class PendingUpdate {
+    final WeakBinderRef binderRef;
+    final int depNum;
+    final FXObject bindee;
+    final int varNum;
+    /** The edge's Dep, or null if the bindee was compact when this was queued. */
+    final Dep dep;
+    int startPos, endPos, newLength;
+    final int phase;
+    PendingUpdate next;
+    /** Dependency height of the binder and queueing order, for ordered propagation. */
+    int height, seq;
 
-    void linkToBindee(FXObject bindee, int bindeeVarNum) {
-        WeakBinderRef bref = WeakBinderRef.instance(bindee);
-        DepChain chain = DepChain.findForce(bindeeVarNum, bindee.getDepChain$internal$(), bref);
-        // Link into binder chain of bindee
-        Dep firstBinder = chain.dependencies;
-        nextInBinders = firstBinder;
-        if (firstBinder != null) {
-            firstBinder.prevInBinders = this;
-        }
-        prevInBinders = chain;
-        chain.dependencies = this;
-        this.chain = chain;
+    PendingUpdate(WeakBinderRef binderRef, int depNum, FXObject bindee, int varNum, Dep dep,
+            int startPos, int endPos, int newLength, int phase) {
+        this.binderRef = binderRef;
+        this.depNum = depNum;
+        this.bindee = bindee;
+        this.varNum = varNum;
+        this.dep = dep;
+        this.startPos = startPos;
+        this.endPos = endPos;
+        this.newLength = newLength;
+        this.phase = phase;
     }
 
     /**
-     * Unlink from dependency chain of bindee.
+     * Fold a later notification for the same edge into this one.
+     *
+     * A sequence change replaces [startPos, endPos) of the old value with
+     * newLength elements.  Two such changes are composed into the one
+     * replacement that covers both, in terms of the value before the
+     * first and the value after the second, so a binder such as a bound
+     * for-expression still sees an exact range.  A no-change notification
+     * (startPos undefined) adds nothing; a whole-value one (endPos
+     * undefined) absorbs the other.
      */
-    void unlinkFromBindee() {
-        BinderLinkable prevBinder = prevInBinders;
-        if (prevBinder == null)
+    void merge(int startPos, int endPos, int newLength) {
+        final int UNDEFINED = Sequences.UNDEFINED_MARKER_INT;
+        if (startPos == UNDEFINED)
+            return;
+        if (this.startPos == UNDEFINED) {
+            this.startPos = startPos;
+            this.endPos = endPos;
+            this.newLength = newLength;
             return;
-        // Note that removeDependent might call this method while
-        // notifyDependents is in the middle of a dependency chain.
-        // Since notifyDependents needs the nextInBinders field,
-        // we can't null it out, but it can be GC'd as soon as
-        // notifyDependents gets past this Dep.
-        // We do null out binderRef and prevInBinders to indicate
-        // that this Dep has already been unlinked.
-        binderRef = null;
-        prevInBinders = null;
-        Dep next = nextInBinders;
-        if (prevBinder instanceof DepChain) {
-            DepChain chain = (DepChain) prevBinder;
-            chain.dependencies = next;
-            if (next == null) {
-                if (chain.child0 == null)
-                    chain.replaceParent(chain.child1);
-                else if (chain.child1 == null)
-                    chain.replaceParent(chain.child0);
-            }
         }
-        else
-            prevBinder.setNextBinder(next);
-        if (next != null) {
-            next.prevInBinders = prevBinder;
+        if (endPos == UNDEFINED || this.endPos == UNDEFINED
+                || newLength == UNDEFINED || this.newLength == UNDEFINED) {
+            this.startPos = 0;
+            this.endPos = UNDEFINED;
+            this.newLength = UNDEFINED;
+            return;
         }
+        // The covering range [lo, hi) in the value between the two changes;
+        // hi is at or after both the end of the first change's new
+        // elements and the end of the second change's old ones.
+        int lo = Math.min(this.startPos, startPos);
+        int hi = Math.max(this.startPos + this.newLength, endPos);
+        int oldEnd = hi - (this.newLength - (this.endPos - this.startPos));
+        this.newLength = hi - lo + (newLength - (endPos - startPos));
+        this.startPos = lo;
+        this.endPos = oldEnd;
     }
-}
 
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof PendingUpdate))
+            return false;
+        PendingUpdate other = (PendingUpdate) obj;
+        return binderRef == other.binderRef && depNum == other.depNum
+                && bindee == other.bindee && varNum == other.varNum;
+    }
 
+    @Override
+    public int hashCode() {
+        return (System.identityHashCode(binderRef) * 31 + System.identityHashCode(bindee)) * 31
+                + varNum * 17 + depNum;
+    }
+}
@@ -135,9 +135,18 @@ import com.sun.javafx.runtime.sequence.Sequences;
         return (obj.varChangeBits$(varNum, 0, 0) & maskBits) == testBits;
     }
 
+    // Classes compiled with -XDpackedVarFlags keep the flags of their vars in
+    // a VarFlags$internal$ slab (indexed by VOFF$) instead of a VFLGS$ field per
+    // var, and generate no varChangeBits$ cases for them; they end up here.
     public int varChangeBits$(final int varNum, final int clearBits, final int setBits) {
-        return 0;
+        final short[] flags = getVarFlags$internal$();
+        if (flags == null || varNum >= flags.length) {
+            return 0;
+        }
+        return flags[varNum] = (short)((flags[varNum] & ~clearBits) | setBits);
     }
+    // Only FXBase subclasses are packed, so there is nothing to do for the
+    // classes that clone this method.
     public static int varChangeBits$(FXObject obj, final int varNum, final int clearBits, final int setBits) {
         return 0;
     }
@@ -181,6 +190,20 @@ import com.sun.javafx.runtime.sequence.Sequences;
         this.DepChain$internal$ = depChain;
     }
 
+    // Packed var flags.  The slab field is generated in the first packed class
+    // of a hierarchy, which overrides these; other objects have none.
+    public short[] getVarFlags$internal$() {
+        return null;
+    }
+    public static short[] getVarFlags$internal$(FXObject obj) {
+        return null;
+    }
+
+    public void setVarFlags$internal$(short[] flags) {
+    }
+    public static void setVarFlags$internal$(FXObject obj, short[] flags) {
+    }
+
     public void addDependent$(final int varNum, FXObject dep, final int depNum) {
         addDependent$(this, varNum, dep, depNum);
     }
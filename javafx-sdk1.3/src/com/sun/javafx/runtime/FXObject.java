@@ -129,6 +129,10 @@ public interface FXObject {
     public void setThisRef$internal$(WeakBinderRef bref);
     public DepChain getDepChain$internal$();
     public void setDepChain$internal$(DepChain depChain);
+
+    // packed var flags
+    public short[] getVarFlags$internal$();
+    public void setVarFlags$internal$(short[] flags);
     
     public void     addDependent$        (final int varNum, FXObject dep, final int depNum);
     public void     removeDependent$     (final int varNum, FXObject dep);
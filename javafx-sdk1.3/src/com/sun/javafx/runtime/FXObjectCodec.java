@@ -0,0 +1,320 @@
+/*
+ * Copyright 2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.javafx.runtime;
+
+import com.sun.javafx.runtime.sequence.Sequence;
+import com.sun.javafx.runtime.sequence.SequenceCodec;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of graphs of FXObjects, for saving and restoring the
+ * state of an application.
+ *
+ * An object is written as its class and the values of its vars, which are
+ * found by number through count$ and get$ rather than by reflection; the
+ * type of each var is found from getType$, so vars whose values can't be
+ * written, such as functions, are skipped without being read.  Bound vars
+ * and defs are skipped too, and get their values again from their
+ * initializers when the object is read.  Objects reached more than once,
+ * including through cycles, are written once and referred to after that.
+ * Sequences, strings and primitive values are written as by
+ * {@link SequenceCodec}, so a sequence of Integer or Number is written as
+ * one block of the backing array.
+ *
+ * An object is read the way an object literal initializes it: the vars
+ * that were written are marked as being set by the literal, initVars$ is
+ * called, each var then gets its written value or its default, and
+ * complete$ runs the init and postinit blocks.  Since vars are written by
+ * number, data must be read by the same version of the classes that wrote
+ * it; a class whose var count has changed is reported as an IOException.
+ *
+ * A codec keeps the table of the objects it has written or read, so
+ * that later values can refer back to them; use a new one for each
+ * stream.  Like the rest of the runtime, it must be used on the thread
+ * that runs the FX code.
+ */
+public class FXObjectCodec extends SequenceCodec {
+    private static final byte OBJECT = FIRST_OTHER_TAG;
+    private static final byte REF = FIRST_OTHER_TAG + 1;
+    private static final byte UNSET = FIRST_OTHER_TAG + 2;
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final String VOFF_PREFIX = "VOFF$";
+
+    private final Map<Object, Integer> objectIds = new IdentityHashMap<Object, Integer>();
+    private final List<Object> objects = new ArrayList<Object>();
+    private final Map<Class<?>, Integer> classIds = new HashMap<Class<?>, Integer>();
+    private final List<Constructor<?>> classes = new ArrayList<Constructor<?>>();
+    private final Map<Class<?>, Field[]> varFields = new HashMap<Class<?>, Field[]>();
+
+    /** Encode value, usually the root of a graph of objects, into a new buffer. */
+    public static ByteBuffer save(Object value) throws IOException {
+        Output out = new Output();
+        new FXObjectCodec().writeValue(out, value);
+        return out.toByteBuffer();
+    }
+
+    /** Encode value to the channel, such as a FileChannel. */
+    public static void save(Object value, WritableByteChannel channel) throws IOException {
+        Output out = new Output(channel, DEFAULT_BUFFER_SIZE);
+        new FXObjectCodec().writeValue(out, value);
+        out.flush();
+    }
+
+    /** Decode a value saved to a buffer, from the buffer's position. */
+    public static Object restore(ByteBuffer buf) throws IOException {
+        return new FXObjectCodec().readValue(new Input(buf));
+    }
+
+    /** Decode a value saved to a channel. */
+    public static Object restore(ReadableByteChannel channel) throws IOException {
+        return new FXObjectCodec().readValue(new Input(channel, DEFAULT_BUFFER_SIZE));
+    }
+
+    @Override
+    protected boolean canWrite(Object value) {
+        return value instanceof FXObject || super.canWrite(value);
+    }
+
+    @Override
+    protected void writeOther(Output out, Object value) throws IOException {
+        if (!(value instanceof FXObject)) {
+            super.writeOther(out, value);
+            return;
+        }
+        Integer id = objectIds.get(value);
+        if (id != null) {
+            out.writeByte(REF);
+            out.writeInt(id);
+            return;
+        }
+        FXObject obj = (FXObject) value;
+        objectIds.put(obj, objects.size());
+        objects.add(obj);
+        out.writeByte(OBJECT);
+        writeClass(out, obj.getClass());
+        final int count = obj.count$();
+        out.writeInt(count);
+        for (int varNum = 0; varNum < count; varNum++) {
+            Object varValue = null;
+            boolean written = !obj.varTestBits$(varNum, FXObject.VFLGS$IS_BOUND, FXObject.VFLGS$IS_BOUND)
+                    && !obj.varTestBits$(varNum, FXObject.VFLGS$IS_READONLY, FXObject.VFLGS$IS_READONLY)
+                    && canWriteType(obj, varNum);
+            if (written) {
+                varValue = obj.get$(varNum);
+                written = canWrite(varValue);
+            }
+            if (written) {
+                writeValue(out, varValue);
+            } else {
+                out.writeByte(UNSET);
+            }
+        }
+    }
+
+    /**
+     * Whether a var's declared type can be written.  Classes compiled
+     * before getType$ was generated don't know their var types; their
+     * values are checked instead.
+     */
+    private boolean canWriteType(FXObject obj, int varNum) {
+        Class<?> type;
+        try {
+            type = obj.getType$(varNum);
+        } catch (IllegalArgumentException ex) {
+            return true;
+        }
+        return type == null || type.isPrimitive() || type == String.class || type == Object.class
+                || Sequence.class.isAssignableFrom(type) || FXObject.class.isAssignableFrom(type);
+    }
+
+    private void writeClass(Output out, Class<?> cls) throws IOException {
+        Integer id = classIds.get(cls);
+        if (id != null) {
+            out.writeInt(id);
+        } else {
+            // A new class is given the next id, followed by its name.
+            id = classIds.size();
+            classIds.put(cls, id);
+            out.writeInt(id);
+            out.writeString(cls.getName());
+        }
+    }
+
+    @Override
+    protected Object readOther(Input in, int tag) throws IOException {
+        if (tag == REF) {
+            int id = in.readInt();
+            if (id < 0 || id >= objects.size())
+                throw new IOException("bad object reference " + id);
+            return objects.get(id);
+        }
+        if (tag != OBJECT)
+            return super.readOther(in, tag);
+
+        Constructor<?> cons = readClass(in);
+        FXObject obj = newInstance(cons);
+        objects.add(obj);
+        final int count = in.readLength();
+        if (count != obj.count$())
+            throw new IOException("expected " + count + " vars in " + cons.getDeclaringClass().getName() +
+                    ", found " + obj.count$());
+        Object[] values = new Object[count];
+        boolean[] isSet = new boolean[count];
+        for (int varNum = 0; varNum < count; varNum++) {
+            int varTag = in.readByte();
+            if (varTag != UNSET) {
+                values[varNum] = readValue(in, varTag);
+                isSet[varNum] = true;
+                obj.setFlags$(varNum, values[varNum] instanceof Sequence ? FXObject.VFLGS$INIT_OBJ_LIT_SEQUENCE
+                        : FXObject.VFLGS$INIT_OBJ_LIT);
+            }
+        }
+
+        obj.initVars$();
+        for (int varNum = 0; varNum < count; varNum++) {
+            obj.varChangeBits$(varNum, 0, FXObject.VFLGS$INIT$READY);
+            if (isSet[varNum]) {
+                setVar(obj, varNum, values[varNum]);
+            } else {
+                obj.applyDefaults$(varNum);
+            }
+        }
+        obj.complete$();
+        return obj;
+    }
+
+    /**
+     * Set a var that was written.  Vars without accessors, which are only
+     * assigned by their initializers and object literals, have no case in
+     * set$; they are set through their fields, as FXLocal does.
+     */
+    private void setVar(FXObject obj, int varNum, Object value) throws IOException {
+        try {
+            obj.set$(varNum, value);
+            return;
+        } catch (IllegalArgumentException ex) {
+            Field field = varField(obj, varNum);
+            if (field == null)
+                throw ex;
+            try {
+                field.set(obj, value);
+            } catch (IllegalAccessException iae) {
+                IOException ioe = new IOException("cannot set " + field);
+                ioe.initCause(iae);
+                throw ioe;
+            }
+        }
+    }
+
+    private Field varField(FXObject obj, int varNum) {
+        Class<?> cls = obj.getClass();
+        Field[] fields = varFields.get(cls);
+        if (fields == null) {
+            fields = new Field[obj.count$()];
+            varFields.put(cls, fields);
+        }
+        if (fields[varNum] == null) {
+            fields[varNum] = findVarField(cls, varNum);
+        }
+        return fields[varNum];
+    }
+
+    /** The field of var varNum: the one named after its VOFF$ field, with a $ prefix. */
+    private static Field findVarField(Class<?> cls, int varNum) {
+        for (Class<?> c = cls; c != null; c = c.getSuperclass()) {
+            for (Field offset : c.getDeclaredFields()) {
+                String name = offset.getName();
+                if (name.startsWith(VOFF_PREFIX) && offset.getType() == int.class
+                        && Modifier.isStatic(offset.getModifiers())) {
+                    try {
+                        offset.setAccessible(true);
+                        if (offset.getInt(null) == varNum) {
+                            Field field = c.getDeclaredField("$" + name.substring(VOFF_PREFIX.length()));
+                            field.setAccessible(true);
+                            return field;
+                        }
+                    } catch (Exception ignored) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private Constructor<?> readClass(Input in) throws IOException {
+        int id = in.readInt();
+        if (id >= 0 && id < classes.size())
+            return classes.get(id);
+        if (id != classes.size())
+            throw new IOException("bad class reference " + id);
+        String name = in.readString();
+        Class<?> cls = loadClass(name, FXObject.class);
+        Constructor<?> cons;
+        try {
+            // The constructor used for object literals, which leaves
+            // initialization to the caller.
+            cons = cls.getDeclaredConstructor(boolean.class);
+            cons.setAccessible(true);
+        } catch (NoSuchMethodException ex) {
+            IOException ioe = new IOException("no object literal constructor in " + name);
+            ioe.initCause(ex);
+            throw ioe;
+        }
+        classes.add(cons);
+        return cons;
+    }
+
+    private static FXObject newInstance(Constructor<?> cons) throws IOException {
+        try {
+            return (FXObject) cons.newInstance(Boolean.TRUE);
+        } catch (InvocationTargetException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            IOException ioe = new IOException("cannot create " + cons.getDeclaringClass().getName());
+            ioe.initCause(cause);
+            throw ioe;
+        } catch (Exception ex) {
+            IOException ioe = new IOException("cannot create " + cons.getDeclaringClass().getName());
+            ioe.initCause(ex);
+            throw ioe;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright 2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.javafx.runtime;
+
+import java.util.IdentityHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the invalidate-phase updates of many {@link SideEffectFree} binders
+ * of one bindee var on a pool of worker threads.
+ *
+ * The notifying thread partitions the binders, hands the partitions to the
+ * pool and waits for all of them (the join).  All the edges of one binder
+ * are put in the same partition, so a binder that depends on the var more
+ * than once is only ever updated by one thread.  While a worker runs an update,
+ * any notifyDependents it causes is recorded in its partition instead of
+ * being delivered, since the rest of the binding runtime is single-threaded.
+ * After the join, the recorded notifications are delivered on the notifying
+ * thread, partition by partition, in the order they were made.
+ */
+final class ParallelInvalidator {
+    /**
+     * Minimum number of side-effect-free dependents of a var for its
+     * invalidation to be fanned out; 0 (the default) disables it.
+     */
+    static final int threshold = Math.max(0, Util.getIntProperty("javafx.binding.parallelThreshold", 0));
+
+    /** Smallest number of binders worth handing to a worker. */
+    private static final int MIN_PARTITION = 64;
+
+    private static final int nThreads = Runtime.getRuntime().availableProcessors();
+
+    private static ExecutorService pool;
+    private static boolean poolFailed;
+
+    /** The partition being run on the notifying thread, if the pool rejected it. */
+    private static Partition inlinePartition;
+
+    private ParallelInvalidator() {
+    }
+
+    private static final class Worker extends Thread {
+        /** The partition being run by this worker, or null between partitions. */
+        Partition partition;
+
+        Worker(Runnable r) {
+            super(r, "JavaFX binding worker");
+        }
+    }
+
+    /** A notifyDependents call made by a worker, to be delivered after the join. */
+    private static final class Notification {
+        final FXObject bindee;
+        final int varNum, startPos, endPos, newLength, phase;
+        Notification next;
+
+        Notification(FXObject bindee, int varNum, int startPos, int endPos, int newLength, int phase) {
+            this.bindee = bindee;
+            this.varNum = varNum;
+            this.startPos = startPos;
+            this.endPos = endPos;
+            this.newLength = newLength;
+            this.phase = phase;
+        }
+    }
+
+    private static final class Partition implements Runnable {
+        final FXObject bindee;
+        final int varNum;
+        final Dep[] deps;
+        final FXObject[] binders;
+        final boolean[] unhandled;
+        final int from, to;
+        final int startPos, endPos, newLength, phase;
+        final CountDownLatch done;
+        Notification head, tail;
+        Throwable failure;
+
+        Partition(FXObject bindee, int varNum, Dep[] deps, FXObject[] binders, boolean[] unhandled, int from, int to,
+                int startPos, int endPos, int newLength, int phase, CountDownLatch done) {
+            this.bindee = bindee;
+            this.varNum = varNum;
+            this.deps = deps;
+            this.binders = binders;
+            this.unhandled = unhandled;
+            this.from = from;
+            this.to = to;
+            this.startPos = startPos;
+            this.endPos = endPos;
+            this.newLength = newLength;
+            this.phase = phase;
+            this.done = done;
+        }
+
+        public void run() {
+            Thread thread = Thread.currentThread();
+            Worker worker = thread instanceof Worker ? (Worker) thread : null;
+            if (worker != null)
+                worker.partition = this;
+            else
+                inlinePartition = this;
+            try {
+                for (int i = from; i < to; i++) {
+                    Dep dep = deps[i];
+                    // Removed by an earlier update on the notifying thread.
+                    if (dep.binderRef == null)
+                        continue;
+                    long start = BindingProfiler.enabled ? System.nanoTime() : 0L;
+                    try {
+                        unhandled[i] = !binders[i].update$(bindee, dep.depNum, startPos, endPos, newLength, phase);
+                    } catch (RuntimeException re) {
+                        ErrorHandler.bindException(re);
+                    } finally {
+                        if (BindingProfiler.enabled)
+                            BindingProfiler.updated(binders[i], dep.depNum, bindee, varNum, start);
+                    }
+                }
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                if (worker != null)
+                    worker.partition = null;
+                else
+                    inlinePartition = null;
+                done.countDown();
+            }
+        }
+
+        void record(Notification notification) {
+            if (tail == null)
+                head = notification;
+            else
+                tail.next = notification;
+            tail = notification;
+        }
+    }
+
+    /**
+     * If the current thread is running a partition, record a notification
+     * for delivery after the join and return true.
+     */
+    static boolean deferFromWorker(FXObject bindee, int varNum, int startPos, int endPos, int newLength, int phase) {
+        Thread thread = Thread.currentThread();
+        Partition partition = thread instanceof Worker ? ((Worker) thread).partition : inlinePartition;
+        if (partition == null)
+            return false;
+        partition.record(new Notification(bindee, varNum, startPos, endPos, newLength, phase));
+        return true;
+    }
+
+    private static synchronized ExecutorService getPool() {
+        if (pool == null && !poolFailed) {
+            try {
+                pool = Executors.newFixedThreadPool(nThreads, new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Worker(r);
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+            } catch (SecurityException ignored) {
+                poolFailed = true;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Invalidate binders[0..n), the dependents of bindee's varNum, in parallel, then deliver the notifications
+     * they made.  Returns the edges whose update was not handled (the
+     * caller unlinks them), or null if no pool is available, in which case
+     * nothing has been done.  The edges may be reordered in deps and binders,
+     * and the result is indexed by the new order.
+     */
+    static boolean[] invalidate(FXObject bindee, int varNum, Dep[] deps, FXObject[] binders, int n,
+            int startPos, int endPos, int newLength, int phase) {
+        ExecutorService executor = getPool();
+        if (executor == null)
+            return null;
+        int partitions = Math.max(1, Math.min(nThreads, n / MIN_PARTITION));
+        groupByBinder(deps, binders, n);
+        boolean[] unhandled = new boolean[n];
+        CountDownLatch done = new CountDownLatch(partitions);
+        Partition[] parts = new Partition[partitions];
+        int to = 0;
+        for (int p = 0; p < partitions; p++) {
+            int from = to;
+            to = Math.max(from, (int) ((long) n * (p + 1) / partitions));
+            // Don't split the edges of a binder between partitions.
+            while (to > 0 && to < n && binders[to] == binders[to - 1])
+                to++;
+            parts[p] = new Partition(bindee, varNum, deps, binders, unhandled, from, to, startPos, endPos, newLength, phase, done);
+        }
+        int submitted = 0;
+        try {
+            for (; submitted < partitions; submitted++)
+                executor.execute(parts[submitted]);
+        } catch (RuntimeException re) {
+            // Rejected: run the remaining partitions here.  Their
+            // notifications are recorded like those of the workers.
+            for (; submitted < partitions; submitted++)
+                parts[submitted].run();
+        }
+        awaitUninterruptibly(done);
+        for (int p = 0; p < partitions; p++) {
+            Throwable failure = parts[p].failure;
+            if (failure != null)
+                ParallelInvalidator.<RuntimeException>rethrow(failure);
+        }
+        for (int p = 0; p < partitions; p++) {
+            for (Notification nt = parts[p].head; nt != null; nt = nt.next)
+                DependentsManager.notifyDependents(nt.bindee, nt.varNum, nt.startPos, nt.endPos, nt.newLength, nt.phase);
+        }
+        return unhandled;
+    }
+
+    /**
+     * Reorder deps[0..n) and binders[0..n) so that the edges of each binder
+     * are adjacent, keeping the binders in the order of their first edge.
+     */
+    private static void groupByBinder(Dep[] deps, FXObject[] binders, int n) {
+        IdentityHashMap<FXObject, Integer> firstEdge = new IdentityHashMap<FXObject, Integer>(n);
+        int[] group = new int[n];
+        boolean repeated = false;
+        for (int i = 0; i < n; i++) {
+            Integer first = firstEdge.get(binders[i]);
+            if (first == null) {
+                firstEdge.put(binders[i], i);
+                group[i] = i;
+            } else {
+                group[i] = first;
+                repeated = true;
+            }
+        }
+        if (!repeated)
+            return;
+        // Counting sort on the index of the first edge, which is stable.
+        int[] next = new int[n];
+        for (int i = 0; i < n; i++)
+            next[group[i]]++;
+        for (int g = 0, pos = 0; g < n; g++) {
+            int count = next[g];
+            next[g] = pos;
+            pos += count;
+        }
+        Dep[] oldDeps = new Dep[n];
+        FXObject[] oldBinders = new FXObject[n];
+        System.arraycopy(deps, 0, oldDeps, 0, n);
+        System.arraycopy(binders, 0, oldBinders, 0, n);
+        for (int i = 0; i < n; i++) {
+            int pos = next[group[i]]++;
+            deps[pos] = oldDeps[i];
+            binders[pos] = oldBinders[i];
+        }
+    }
+
+    /**
+     * Throw t unchanged, even if it is a checked exception: an update$
+     * called on this thread would have thrown it as it is, since FX
+     * functions need not declare what they throw.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E extends Throwable> void rethrow(Throwable t) throws E {
+        throw (E) t;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        for (;;) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException ie) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.javafx.runtime;
+
+import com.sun.javafx.runtime.sequence.ArraySequence;
+import com.sun.javafx.runtime.sequence.Sequence;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reports the memory used by the sequence vars of a graph of FXObjects, to
+ * find the long-lived sequences that hold on to more array than they need.
+ *
+ * The graph is walked from a root object through every var whose value
+ * is an FXObject or a sequence of FXObjects, as in
+ * {@link DependentsGraphWriter} with {@code followFields}.  Bound vars that
+ * are invalid are skipped rather than recomputed.  For each sequence var the
+ * report gives the implementation class, the size, the capacity (the length
+ * of the underlying array, for an array sequence) and the waste, which is
+ * the capacity not used by elements.
+ *
+ * {@link #trim} compacts the sparse array sequences found by the same walk,
+ * by the policy of {@link ArraySequence#trimIfSparse}.  Sequences are also
+ * trimmed by that policy when the triggers of an update have run, so this is
+ * only needed for vars that have been left sparse by an earlier policy, or
+ * to reclaim memory when the application is idle, for example from a
+ * {@code FX.deferAction}.  Like the rest of the runtime, these methods must
+ * be called on the thread that runs the FX code.
+ */
+public final class SequenceDiagnostics {
+    private SequenceDiagnostics() {
+    }
+
+    /** The memory used by one sequence var. */
+    public static final class VarReport {
+        public final FXObject owner;
+        public final int varNum;
+        /** The var name, from the class's VOFF$ field. */
+        public final String name;
+        /** The class of the var's current value. */
+        public final String implementation;
+        public final int size;
+        public final int capacity;
+
+        VarReport(FXObject owner, int varNum, Sequence<?> value) {
+            this.owner = owner;
+            this.varNum = varNum;
+            this.name = BindingProfiler.varName(owner.getClass(), varNum);
+            this.implementation = value.getClass().getName();
+            this.size = value.size();
+            this.capacity = value instanceof ArraySequence ? ((ArraySequence<?>) value).capacity() : size;
+        }
+
+        /** The number of unused slots. */
+        public int waste() {
+            return capacity - size;
+        }
+
+        @Override
+        public String toString() {
+            return owner.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(owner)) +
+                    "." + name + ": " + implementation +
+                    " size=" + size + " capacity=" + capacity + " waste=" + waste();
+        }
+    }
+
+    /** The sequence vars reachable from root. */
+    public static List<VarReport> collect(FXObject root) {
+        final List<VarReport> reports = new ArrayList<VarReport>();
+        walk(root, new Visitor() {
+            void visit(FXObject owner, int varNum, Sequence<?> value) {
+                reports.add(new VarReport(owner, varNum, value));
+            }
+        });
+        return reports;
+    }
+
+    /**
+     * The sequence vars reachable from root that waste the most slots,
+     * one line each, in decreasing order of waste.
+     */
+    public static String[] report(FXObject root, int max) {
+        List<VarReport> reports = collect(root);
+        Collections.sort(reports, new Comparator<VarReport>() {
+            public int compare(VarReport a, VarReport b) {
+                int wa = a.waste(), wb = b.waste();
+                return wa > wb ? -1 : wa < wb ? 1 : 0;
+            }
+        });
+        int n = Math.min(Math.max(max, 0), reports.size());
+        String[] lines = new String[n];
+        for (int i = 0; i < n; i++) {
+            lines[i] = reports.get(i).toString();
+        }
+        return lines;
+    }
+
+    /**
+     * Compact the sparse array sequences of the vars reachable from
+     * root.  Returns the number of slots freed.
+     */
+    public static int trim(FXObject root) {
+        final int[] freed = new int[1];
+        walk(root, new Visitor() {
+            void visit(FXObject owner, int varNum, Sequence<?> value) {
+                if (value instanceof ArraySequence) {
+                    freed[0] += ((ArraySequence<?>) value).trimIfSparse();
+                }
+            }
+        });
+        return freed[0];
+    }
+
+
+    // -- Internals only below this point
+
+    private static abstract class Visitor {
+        abstract void visit(FXObject owner, int varNum, Sequence<?> value);
+    }
+
+    private static void walk(FXObject root, Visitor visitor) {
+        Map<FXObject, FXObject> seen = new IdentityHashMap<FXObject, FXObject>();
+        List<FXObject> pending = new ArrayList<FXObject>();
+        push(root, seen, pending);
+        while (!pending.isEmpty()) {
+            FXObject obj = pending.remove(pending.size() - 1);
+            final int count = obj.count$();
+            for (int varNum = 0; varNum < count; varNum++) {
+                if (obj.varTestBits$(varNum, FXObject.VFLGS$IS_BOUND_INVALID, FXObject.VFLGS$IS_BOUND_INVALID)) {
+                    continue;
+                }
+                Object value = obj.get$(varNum);
+                if (value instanceof FXObject) {
+                    push((FXObject) value, seen, pending);
+                } else if (value instanceof Sequence) {
+                    Sequence<?> seq = (Sequence<?>) value;
+                    visitor.visit(obj, varNum, seq);
+                    if (seq.getElementType() == TypeInfo.Object) {
+                        for (Object elem : seq) {
+                            if (elem instanceof FXObject) {
+                                push((FXObject) elem, seen, pending);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void push(FXObject obj, Map<FXObject, FXObject> seen, List<FXObject> pending) {
+        if (obj != null && !seen.containsKey(obj)) {
+            seen.put(obj, obj);
+            pending.add(obj);
+        }
+    }
+}
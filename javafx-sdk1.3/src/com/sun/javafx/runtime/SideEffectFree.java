@@ -0,0 +1,53 @@
+/*
+ * Copyright 2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.javafx.runtime;
+
+/**
+ * Marker for binders whose invalidate-phase {@code update$} only changes
+ * the binder's own state.
+ *
+ * When parallel invalidation is enabled (the system property
+ * {@code javafx.binding.parallelThreshold} is positive), a bindee with at
+ * least that many such dependents on a var may invalidate them on several
+ * threads at once.  The binder's {@code update$} must then be safe to run
+ * concurrently with that of other binders.  Notifications the binder sends
+ * from there are not lost: they are delivered on the notifying thread
+ * after all the invalidations have finished, and before the trigger phase.
+ *
+ * A JavaFX class is marked by extending this interface, as in
+ * <pre>
+ * import com.sun.javafx.runtime.SideEffectFree;
+ *
+ * class Row extends SideEffectFree {
+ *     var src: Source;
+ *     def value = bind src.v * 2;
+ * }
+ * </pre>
+ * The invalidation generated for a bound var such as {@code value} only
+ * marks it invalid and passes the invalidation on to its own dependents,
+ * so it qualifies.  A class with on-replace triggers may still be marked,
+ * since triggers run in the trigger phase, on the notifying thread.
+ */
+public interface SideEffectFree {
+}
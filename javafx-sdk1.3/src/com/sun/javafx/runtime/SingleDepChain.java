@@ -0,0 +1,65 @@
+/*
+ * Copyright 2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.javafx.runtime;
+
+/**
+ * Dependency storage for a bindee with a single dependent edge, the most
+ * common case.  The edge is stored inline: there is no array, no Dep and
+ * no trie node to traverse.  Adding a second edge promotes the bindee to a
+ * {@link CompactDepChain}.
+ *
+ * Like a CompactDepChain, the chain is kept in the binder's
+ * {@code WeakBinderRef.packedChains}, so that {@code WeakBinderRef.cleanup}
+ * clears the edge once the binder is collected, rather than leaving it to
+ * the next notification.  A cleared chain stays installed on the bindee
+ * and is reused by the next addDependent.
+ */
+final class SingleDepChain extends DepChain {
+    /** The binder, or null once the edge has been removed. */
+    WeakBinderRef binderRef;
+    int varNum;
+    int depNum;
+
+    SingleDepChain(WeakBinderRef binderRef, int varNum, int depNum) {
+        this.binderRef = binderRef;
+        this.varNum = varNum;
+        this.depNum = depNum;
+    }
+
+    /**
+     * Replace this chain by a CompactDepChain holding the same edge (if it
+     * is still live), and return the new chain.
+     */
+    CompactDepChain promote(FXObject bindee) {
+        CompactDepChain compact = new CompactDepChain();
+        WeakBinderRef ref = binderRef;
+        if (ref != null && ref.get() != null) {
+            compact.add(ref, varNum, depNum);
+            ref.replacePackedChain(this, compact);
+        }
+        binderRef = null;
+        bindee.setDepChain$internal$(compact);
+        return compact;
+    }
+}
@@ -59,6 +59,34 @@ public class Util {
         return capacity;
     }
 
+    /**
+     * Read a boolean system property, falling back to {@code defaultValue}
+     * if it is not set or cannot be read (e.g. in an applet sandbox).
+     */
+    public static boolean getBooleanProperty(String name, boolean defaultValue) {
+        try {
+            String value = System.getProperty(name);
+            return value == null ? defaultValue : Boolean.valueOf(value).booleanValue();
+        } catch (SecurityException ignored) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Read an integer system property, falling back to {@code defaultValue}
+     * if it is not set, is malformed, or cannot be read.
+     */
+    public static int getIntProperty(String name, int defaultValue) {
+        try {
+            String value = System.getProperty(name);
+            return value == null ? defaultValue : Integer.parseInt(value.trim());
+        } catch (SecurityException ignored) {
+            return defaultValue;
+        } catch (NumberFormatException ignored) {
+            return defaultValue;
+        }
+    }
+
     /** 
      * The following are used to in jfx casts of object to a primitive type,
      * eg:    function(pp) { pp as Float}
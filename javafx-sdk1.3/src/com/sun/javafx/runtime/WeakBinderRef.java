@@ -26,15 +26,43 @@ package com.sun.javafx.runtime;
 import com.sun.javafx.runtime.refq.RefQ;
 import com.sun.javafx.runtime.refq.WeakRef;
 import java.lang.ref.Reference;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class WeakBinderRef extends WeakRef<FXObject> {
     private static RefQ<FXObject> refQ = new RefQ<FXObject>();
     /** Chain of Dep instances whose binderRef point back here. */
     Dep bindees;
+    /**
+     * The packed chains ({@link SingleDepChain}, {@link CompactDepChain})
+     * that hold an edge to this binder, which has no Dep on the bindees
+     * chain.  The chains hold their bindees only through their binders' refs,
+     * so this does not keep the bindees alive.  Some may no longer hold
+     * such an edge; those are pruned when the array is full.
+     *
+     * Most binders have a single such chain, so this is either null, that
+     * DepChain, or a DepChain[] of which the first packedChainCount
+     * entries are used; a separate field would cost every binder a word.
+     */
+    Object packedChains;
+    int packedChainCount;
     /** Increment this to disable checkForCleanups.
      * (I don't know if/when that is needed ...) */
     static volatile int unsafeToCleanup;
 
+    /** Maximum number of dead binders cleaned up in one slice. */
+    static final int cleanupBudget = Math.max(1, Util.getIntProperty("javafx.binding.cleanupBudget", 64));
+
+    /**
+     * If true, dead binders are not cleaned up by addDependent.  Instead a
+     * daemon thread waits on the reference queue and schedules cleanup
+     * slices with {@link Entry#deferAction}, so the Dep chains are still
+     * only modified on the thread that runs deferred actions.
+     */
+    static final boolean deferredCleanup = startReaper(
+            "deferred".equals(getCleanupMode()));
+
     public static WeakBinderRef instance(FXObject bindee) {
         WeakBinderRef bref = bindee.getThisRef$internal$();
         if (bref == null) {
@@ -44,12 +72,16 @@ public class WeakBinderRef extends WeakRef<FXObject> {
         return bref;
     }
 
+    /**
+     * Clean up after at most {@code cleanupBudget} collected binders.
+     * Does nothing if cleanup is deferred to the reaper.
+     */
     static void checkForCleanups() {
-        if (unsafeToCleanup > 0) {
+        if (deferredCleanup || unsafeToCleanup > 0) {
             return;
         }
         Reference<? extends FXObject> ref;
-        while ((ref = refQ.poll()) != null) {
+        for (int budget = cleanupBudget; --budget >= 0 && (ref = refQ.poll()) != null; ) {
             if (ref instanceof WeakBinderRef) {
                 ((WeakBinderRef) ref).cleanup();
             }
@@ -67,5 +99,144 @@ public class WeakBinderRef extends WeakRef<FXObject> {
             dep = next;
         }
         bindees = null;
+        if (packedChains instanceof DepChain)
+            DependentsManager.removePackedEdges((DepChain) packedChains, this);
+        else {
+            for (int i = 0; i < packedChainCount; i++)
+                DependentsManager.removePackedEdges(((DepChain[]) packedChains)[i], this);
+        }
+        packedChains = null;
+        packedChainCount = 0;
+    }
+
+    /** Note that chain holds a packed edge to this binder. */
+    void addPackedChain(DepChain chain) {
+        if (packedChains == null) {
+            packedChains = chain;
+            packedChainCount = 1;
+            return;
+        }
+        DepChain[] chains;
+        if (packedChains instanceof DepChain) {
+            // A binder usually adds its edges to one bindee together.
+            if (packedChains == chain)
+                return;
+            chains = new DepChain[2];
+            chains[0] = (DepChain) packedChains;
+            packedChains = chains;
+        } else {
+            chains = (DepChain[]) packedChains;
+            if (packedChainCount > 0 && chains[packedChainCount - 1] == chain)
+                return;
+            if (packedChainCount == chains.length) {
+                prunePackedChains(chains);
+                if (packedChainCount * 2 > chains.length) {
+                    DepChain[] newChains = new DepChain[2 * chains.length];
+                    System.arraycopy(chains, 0, newChains, 0, packedChainCount);
+                    packedChains = chains = newChains;
+                }
+            }
+        }
+        chains[packedChainCount++] = chain;
+    }
+
+    /**
+     * Note that the edge to this binder in oldChain has moved to newChain,
+     * as when a SingleDepChain is promoted.
+     */
+    void replacePackedChain(DepChain oldChain, DepChain newChain) {
+        if (packedChains == oldChain)
+            packedChains = newChain;
+        else if (packedChains instanceof DepChain[] && packedChainCount > 0
+                && ((DepChain[]) packedChains)[packedChainCount - 1] == oldChain)
+            ((DepChain[]) packedChains)[packedChainCount - 1] = newChain;
+        else
+            addPackedChain(newChain);
+    }
+
+    /** Drop the chains that no longer hold a packed edge to this binder. */
+    private void prunePackedChains(DepChain[] chains) {
+        int j = 0;
+        for (int i = 0; i < packedChainCount; i++) {
+            DepChain chain = chains[i];
+            if (DependentsManager.hasPackedEdge(chain, this))
+                chains[j++] = chain;
+        }
+        for (int i = j; i < packedChainCount; i++)
+            chains[i] = null;
+        packedChainCount = j;
+    }
+
+    // Deferred cleanup.
+
+    /** Collected binders handed over by the reaper thread, not yet cleaned up. */
+    private static final Queue<WeakBinderRef> reaped = new ConcurrentLinkedQueue<WeakBinderRef>();
+    private static final AtomicBoolean sliceScheduled = new AtomicBoolean();
+
+    private static String getCleanupMode() {
+        try {
+            return System.getProperty("javafx.binding.cleanupMode", "inline");
+        } catch (SecurityException ignored) {
+            return "inline";
+        }
+    }
+
+    /** Start the reaper thread if requested, returning false if that is not possible. */
+    private static boolean startReaper(boolean wanted) {
+        if (!wanted)
+            return false;
+        try {
+            Thread reaper = new Thread("JavaFX binder reaper") {
+                @Override
+                public void run() {
+                    for (;;) {
+                        try {
+                            Reference<? extends FXObject> ref = refQ.remove();
+                            do {
+                                if (ref instanceof WeakBinderRef)
+                                    reaped.add((WeakBinderRef) ref);
+                            } while ((ref = refQ.poll()) != null);
+                            scheduleSlice();
+                        } catch (InterruptedException ex) {
+                            return;
+                        }
+                    }
+                }
+            };
+            reaper.setDaemon(true);
+            reaper.start();
+            return true;
+        } catch (SecurityException ignored) {
+            return false;
+        }
+    }
+
+    private static void scheduleSlice() {
+        if (sliceScheduled.compareAndSet(false, true)) {
+            Entry.deferAction(new Runnable() {
+                public void run() {
+                    cleanupSlice();
+                }
+            });
+        }
+    }
+
+    /** Run as a deferred action: clean up after a bounded number of binders. */
+    private static void cleanupSlice() {
+        sliceScheduled.set(false);
+        // If cleanup is currently unsafe, leave the queue alone and try
+        // again on a later pass of the event loop; no other binder may be
+        // reaped to schedule another slice.
+        if (unsafeToCleanup > 0) {
+            if (!reaped.isEmpty())
+                scheduleSlice();
+            return;
+        }
+        WeakBinderRef ref;
+        for (int budget = cleanupBudget; --budget >= 0 && (ref = reaped.poll()) != null; ) {
+            ref.cleanup();
+        }
+        if (!reaped.isEmpty())
+            scheduleSlice();
     }
 }
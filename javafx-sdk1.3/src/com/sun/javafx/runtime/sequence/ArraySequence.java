@@ -23,7 +23,11 @@
 
 package com.sun.javafx.runtime.sequence;
 
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
 import com.sun.javafx.runtime.TypeInfo;
+import com.sun.javafx.runtime.Util;
 
 /**
  * Sequence implementation class that stores sequence elements in an array.
@@ -44,7 +48,10 @@ import com.sun.javafx.runtime.TypeInfo;
  * The compiler inserts calls to {@code incrementShared} when "reading" a sequence
  * variable in a way that may cause it to be shared.  Getting a single
  * item from the sequence does not require {@code shared} to be set.
- * We never go back from shared to unshared.
+ * An instance variable releases its old value (with {@code decrementSharing})
+ * when {@code Sequences.set}, {@code insert} or {@code replaceSlice} replace
+ * it by a different sequence, so a value that was shared can become
+ * unshared again once all but one of its owners have moved on.
  *
  * We use a <a href="http://en.wikipedia.org/wiki/Buffer_gap">gap buffer</a>
  * as in the Emacs text editor and {@code javax.swing.text.GapContent}.
@@ -53,6 +60,22 @@ import com.sun.javafx.runtime.TypeInfo;
  * deletions at widely separated offsets, since that requires "moving" the
  * gap to the insertion or deletion point.
  *
+ * The gap only grows, by doubling the array, so a burst of insertions
+ * followed by deletions can leave a long-lived sequence with a large empty
+ * gap.  {@link #trimIfSparse} compacts the array when the gap is more than
+ * {@code javafx.sequence.trimGapPercent} percent (default 75) of it;
+ * {@code Sequences} calls it once the triggers of an update of a sequence
+ * variable have run, since the gap is no longer needed for the old values.
+ * A value of 0 turns this off.  The default is high enough that the
+ * doubling alone never causes a trim, so a run of insertions is not
+ * slowed down.
+ *
+ * The hash code is cached, and cleared by each change of the elements, so
+ * comparing sequences that are seldom modified, as bound code and triggers
+ * do, can usually reject unequal values without looking at the elements.
+ * Two array sequences with the same kind of array are compared directly
+ * on their arrays, without boxing.
+ *
  * @author Brian Goetz
  * @author Per Bothner
  */
@@ -72,9 +95,28 @@ public abstract class ArraySequence<T> extends AbstractSequence<T> {
      * The count is "sticky" once it wraps around.  Of course that's not going
      * to happen as long as we use an int, but in future if it saves space
      * we might reduce the number of bits used for {@code sharing}.
+     * The same is true of {@link #setMaxShared}: a pinned sequence, such as
+     * a {@code TypeInfo.emptySequence}, is never released.
+     * The count may still be too high (a local variable or parameter never
+     * releases its reference), but it is never too low.
      */
     private int sharing;
 
+    private static final int MAX_SHARED = (-1) >>> 1;
+
+    /** The cached hash code, valid if hashValid is set. */
+    private int hash;
+    private boolean hashValid;
+
+    static final boolean collectCopyStatistics = Util.getBooleanProperty("javafx.sequence.copyStats", false);
+    static final AtomicLong copiesAvoided = new AtomicLong();
+    static final AtomicLong copiesMade = new AtomicLong();
+
+    static final int trimGapPercent = Util.getIntProperty("javafx.sequence.trimGapPercent", 75);
+
+    /** Arrays no longer than this are never trimmed by {@link #trimIfSparse}. */
+    private static final int MIN_TRIM_LENGTH = 4 * DEFAULT_SIZE;
+
     protected ArraySequence(TypeInfo<T> ti) {
         super(ti);
     }
@@ -89,12 +131,20 @@ public abstract class ArraySequence<T> extends AbstractSequence<T> {
     @Override
     public void decrementSharing() {
         int sh = sharing;
-        if (sh > 0)
+        if (sh > 0 && sh != MAX_SHARED)
             sharing = sh - 1;
     }
 
     public void setMaxShared() {
-        sharing = (-1) >>> 1;
+        sharing = MAX_SHARED;
+    }
+
+    /**
+     * Record whether an update of a sequence could modify it in place
+     * or had to copy it because it was shared.
+     */
+    static void countCopy(boolean copied) {
+        (copied ? copiesMade : copiesAvoided).incrementAndGet();
     }
 
     public boolean isShared() {
@@ -199,8 +249,22 @@ public abstract class ArraySequence<T> extends AbstractSequence<T> {
         }
     }
 
-    /** Make sure gap is at least 'needed' elements long. */
+    /**
+     * Clear the cached hash code.  Every method that changes the elements
+     * of an array of primitives must call this, directly or through
+     * gapReserve.
+     */
+    final void invalidateHash() {
+        hashValid = false;
+    }
+
+    /**
+     * Make sure gap is at least 'needed' elements long.
+     * Every change to the elements but the replacement of a single
+     * element starts here, so this also clears the cached hash code.
+     */
     protected void gapReserve(int where, int needed) {
+        hashValid = false;
         if (needed > gapEnd - gapStart) {
             int oldLength = getRawArrayLength();
             int newLength = oldLength < 16 ? 16 : 2 * oldLength;
@@ -276,6 +340,343 @@ public abstract class ArraySequence<T> extends AbstractSequence<T> {
     public void clearOldValues (int oldLength) {
     }
 
+    /**
+     * The same value as AbstractSequence.hashCode, computed from the array
+     * without boxing.  For arrays of primitives it is cached until the
+     * elements change.  The elements of an Object array may be mutable
+     * objects whose hash codes change while the sequence does not, so
+     * theirs is computed each time.
+     */
+    @Override
+    public int hashCode() {
+        if (hashValid)
+            return hash;
+        Object array = getRawArray();
+        int h = hashRun(array, 0, 0, gapStart);
+        h = hashRun(array, h, gapEnd, getRawArrayLength());
+        if (array.getClass().getComponentType().isPrimitive()) {
+            hash = h;
+            hashValid = true;
+        }
+        return h;
+    }
+
+    /** Continue the hash code h with the elements of array from lo to hi, exclusive. */
+    private static int hashRun(Object array, int h, int lo, int hi) {
+        if (array instanceof int[]) {
+            int[] a = (int[]) array;
+            for (int i = lo; i < hi; i++)
+                h = 31 * h + a[i];
+        } else if (array instanceof float[]) {
+            float[] a = (float[]) array;
+            for (int i = lo; i < hi; i++)
+                h = 31 * h + Float.floatToIntBits(a[i]);
+        } else if (array instanceof double[]) {
+            double[] a = (double[]) array;
+            for (int i = lo; i < hi; i++) {
+                long bits = Double.doubleToLongBits(a[i]);
+                h = 31 * h + (int) (bits ^ (bits >>> 32));
+            }
+        } else if (array instanceof long[]) {
+            long[] a = (long[]) array;
+            for (int i = lo; i < hi; i++)
+                h = 31 * h + (int) (a[i] ^ (a[i] >>> 32));
+        } else if (array instanceof boolean[]) {
+            boolean[] a = (boolean[]) array;
+            for (int i = lo; i < hi; i++)
+                h = 31 * h + (a[i] ? 1231 : 1237);
+        } else if (array instanceof char[]) {
+            char[] a = (char[]) array;
+            for (int i = lo; i < hi; i++)
+                h = 31 * h + a[i];
+        } else if (array instanceof short[]) {
+            short[] a = (short[]) array;
+            for (int i = lo; i < hi; i++)
+                h = 31 * h + a[i];
+        } else if (array instanceof byte[]) {
+            byte[] a = (byte[]) array;
+            for (int i = lo; i < hi; i++)
+                h = 31 * h + a[i];
+        } else {
+            Object[] a = (Object[]) array;
+            for (int i = lo; i < hi; i++)
+                h = 31 * h + (a[i] != null ? a[i].hashCode() : 0);
+        }
+        return h;
+    }
+
+    /**
+     * Whether both sequences have cached hash codes, and they differ,
+     * so the sequences are not equal.  Only arrays of primitives cache
+     * their hash codes.
+     */
+    static boolean knownUnequal(ArraySequence<?> one, ArraySequence<?> other) {
+        return one.hashValid && other.hashValid && one.hash != other.hash;
+    }
+
+    /**
+     * Whether other can be compared with this directly by rangeEquals:
+     * both have the same kind of array.
+     */
+    boolean sameArrayKind(ArraySequence<?> other) {
+        Class<?> a = getRawArray().getClass();
+        Class<?> b = other.getRawArray().getClass();
+        return a == b || (!a.getComponentType().isPrimitive() && !b.getComponentType().isPrimitive());
+    }
+
+    /**
+     * Whether the length elements of this from position start equal those
+     * of other from position otherStart, as Sequences.isEqual would find.
+     * Both must have the same kind of array, and the positions must be in
+     * range.  When both arrays hold just the compared elements, this is
+     * Arrays.equals; otherwise the runs on either side of the two gaps
+     * are compared in turn.
+     */
+    boolean rangeEquals(int start, ArraySequence<?> other, int otherStart, int length) {
+        Object a = getRawArray();
+        Object b = other.getRawArray();
+        if (start == 0 && otherStart == 0 && gapStart == gapEnd && other.gapStart == other.gapEnd
+                && length == getRawArrayLength() && length == other.getRawArrayLength())
+            return arraysEqual(a, b);
+        while (length > 0) {
+            int p = start < gapStart ? start : start + gapEnd - gapStart;
+            int q = otherStart < other.gapStart ? otherStart : otherStart + other.gapEnd - other.gapStart;
+            int run = Math.min(length, Math.min(
+                    start < gapStart ? gapStart - start : getRawArrayLength() - p,
+                    otherStart < other.gapStart ? other.gapStart - otherStart : other.getRawArrayLength() - q));
+            if (!runsEqual(a, p, b, q, run))
+                return false;
+            start += run;
+            otherStart += run;
+            length -= run;
+        }
+        return true;
+    }
+
+    private static boolean arraysEqual(Object a, Object b) {
+        if (a instanceof int[])
+            return Arrays.equals((int[]) a, (int[]) b);
+        if (a instanceof float[])
+            return Arrays.equals((float[]) a, (float[]) b);
+        if (a instanceof double[])
+            return Arrays.equals((double[]) a, (double[]) b);
+        if (a instanceof long[])
+            return Arrays.equals((long[]) a, (long[]) b);
+        if (a instanceof boolean[])
+            return Arrays.equals((boolean[]) a, (boolean[]) b);
+        if (a instanceof char[])
+            return Arrays.equals((char[]) a, (char[]) b);
+        if (a instanceof short[])
+            return Arrays.equals((short[]) a, (short[]) b);
+        if (a instanceof byte[])
+            return Arrays.equals((byte[]) a, (byte[]) b);
+        return Arrays.equals((Object[]) a, (Object[]) b);
+    }
+
+    /**
+     * Compare n elements of a from p with those of b from q.  Floats and
+     * doubles are compared by their bits, as Float.equals and Arrays.equals
+     * do, so NaN equals NaN and 0.0 does not equal -0.0.
+     */
+    private static boolean runsEqual(Object a, int p, Object b, int q, int n) {
+        if (a instanceof int[]) {
+            int[] x = (int[]) a, y = (int[]) b;
+            for (int i = 0; i < n; i++)
+                if (x[p + i] != y[q + i])
+                    return false;
+        } else if (a instanceof float[]) {
+            float[] x = (float[]) a, y = (float[]) b;
+            for (int i = 0; i < n; i++)
+                if (Float.floatToIntBits(x[p + i]) != Float.floatToIntBits(y[q + i]))
+                    return false;
+        } else if (a instanceof double[]) {
+            double[] x = (double[]) a, y = (double[]) b;
+            for (int i = 0; i < n; i++)
+                if (Double.doubleToLongBits(x[p + i]) != Double.doubleToLongBits(y[q + i]))
+                    return false;
+        } else if (a instanceof long[]) {
+            long[] x = (long[]) a, y = (long[]) b;
+            for (int i = 0; i < n; i++)
+                if (x[p + i] != y[q + i])
+                    return false;
+        } else if (a instanceof boolean[]) {
+            boolean[] x = (boolean[]) a, y = (boolean[]) b;
+            for (int i = 0; i < n; i++)
+                if (x[p + i] != y[q + i])
+                    return false;
+        } else if (a instanceof char[]) {
+            char[] x = (char[]) a, y = (char[]) b;
+            for (int i = 0; i < n; i++)
+                if (x[p + i] != y[q + i])
+                    return false;
+        } else if (a instanceof short[]) {
+            short[] x = (short[]) a, y = (short[]) b;
+            for (int i = 0; i < n; i++)
+                if (x[p + i] != y[q + i])
+                    return false;
+        } else if (a instanceof byte[]) {
+            byte[] x = (byte[]) a, y = (byte[]) b;
+            for (int i = 0; i < n; i++)
+                if (x[p + i] != y[q + i])
+                    return false;
+        } else {
+            Object[] x = (Object[]) a, y = (Object[]) b;
+            for (int i = 0; i < n; i++) {
+                Object o = x[p + i];
+                if (o == null ? y[q + i] != null : !o.equals(y[q + i]))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Arrays of the number types are read directly, stepping over the gap,
+     * rather than translating and checking each position as getAs does.
+     */
+    @Override
+    PrimitiveCursor cursor(int startPos, int lastPos) {
+        Object array = getRawArray();
+        int size = size();
+        int start = Math.min(Math.max(0, startPos), size);
+        int end = Math.min(Math.max(start, lastPos+1), size);
+        if (array instanceof int[])
+            return new IntArrayCursor(this, (int[]) array, start, end);
+        if (array instanceof double[])
+            return new DoubleArrayCursor(this, (double[]) array, start, end);
+        if (array instanceof float[])
+            return new FloatArrayCursor(this, (float[]) array, start, end);
+        if (array instanceof long[])
+            return new LongArrayCursor(this, (long[]) array, start, end);
+        return super.cursor(startPos, lastPos);
+    }
+
+    /** Iterates over the array positions of elements start up to end. */
+    static abstract class ArrayCursor extends PrimitiveCursor {
+        private int pos;
+        private final int end;
+        private final int gapStart, gapEnd;
+
+        ArrayCursor(ArraySequence<?> seq, int start, int end) {
+            gapStart = seq.gapStart;
+            gapEnd = seq.gapEnd;
+            int gap = gapEnd - gapStart;
+            pos = start < gapStart ? start : start + gap;
+            this.end = end <= gapStart ? end : end + gap;
+        }
+
+        public final boolean hasNext() {
+            return pos < end;
+        }
+
+        final int nextIndex() {
+            int i = pos;
+            if (i >= end)
+                throw new NoSuchElementException();
+            int next = i + 1;
+            pos = next == gapStart ? gapEnd : next;
+            return i;
+        }
+    }
+
+    static final class IntArrayCursor extends ArrayCursor {
+        private final int[] array;
+
+        IntArrayCursor(ArraySequence<?> seq, int[] array, int start, int end) {
+            super(seq, start, end);
+            this.array = array;
+        }
+
+        public int nextInt() { return array[nextIndex()]; }
+        public long nextLong() { return array[nextIndex()]; }
+        public float nextFloat() { return array[nextIndex()]; }
+        public double nextDouble() { return array[nextIndex()]; }
+    }
+
+    static final class LongArrayCursor extends ArrayCursor {
+        private final long[] array;
+
+        LongArrayCursor(ArraySequence<?> seq, long[] array, int start, int end) {
+            super(seq, start, end);
+            this.array = array;
+        }
+
+        public int nextInt() { return (int) array[nextIndex()]; }
+        public long nextLong() { return array[nextIndex()]; }
+        public float nextFloat() { return array[nextIndex()]; }
+        public double nextDouble() { return array[nextIndex()]; }
+    }
+
+    static final class FloatArrayCursor extends ArrayCursor {
+        private final float[] array;
+
+        FloatArrayCursor(ArraySequence<?> seq, float[] array, int start, int end) {
+            super(seq, start, end);
+            this.array = array;
+        }
+
+        public int nextInt() { return (int) array[nextIndex()]; }
+        public long nextLong() { return (long) array[nextIndex()]; }
+        public float nextFloat() { return array[nextIndex()]; }
+        public double nextDouble() { return array[nextIndex()]; }
+    }
+
+    static final class DoubleArrayCursor extends ArrayCursor {
+        private final double[] array;
+
+        DoubleArrayCursor(ArraySequence<?> seq, double[] array, int start, int end) {
+            super(seq, start, end);
+            this.array = array;
+        }
+
+        public int nextInt() { return (int) array[nextIndex()]; }
+        public long nextLong() { return (long) array[nextIndex()]; }
+        public float nextFloat() { return (float) array[nextIndex()]; }
+        public double nextDouble() { return array[nextIndex()]; }
+    }
+
+    /** The length of the underlying array, including the gap. */
+    public int capacity() {
+        return getRawArrayLength();
+    }
+
+    /** The number of unused slots in the underlying array. */
+    public int gapLength() {
+        return gapEnd - gapStart;
+    }
+
+    /**
+     * Compact the array if the gap is more than trimGapPercent of it.
+     * Returns the number of slots freed.
+     */
+    public int trimIfSparse() {
+        int length = getRawArrayLength();
+        int gap = gapEnd - gapStart;
+        if (trimGapPercent <= 0 || length <= MIN_TRIM_LENGTH
+                || (long) gap * 100 <= (long) length * trimGapPercent)
+            return 0;
+        return trimToSize();
+    }
+
+    /**
+     * Reallocate the array to hold just the elements, with no gap.
+     * Returns the number of slots freed.
+     */
+    public int trimToSize() {
+        int length = getRawArrayLength();
+        int gap = gapEnd - gapStart;
+        if (gap == 0)
+            return 0;
+        int size = length - gap;
+        Object oldArray = getRawArray();
+        Object newArray = newRawArray(size);
+        System.arraycopy(oldArray, 0, newArray, 0, gapStart);
+        System.arraycopy(oldArray, gapEnd, newArray, gapStart, length - gapEnd);
+        setRawArray(newArray);
+        gapStart = gapEnd = size;
+        return gap;
+    }
+
     /* DEBUGGING code:
     int id=++counter;
     static int counter;
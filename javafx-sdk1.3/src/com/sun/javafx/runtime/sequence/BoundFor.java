@@ -22,6 +22,7 @@
  */
 
 package com.sun.javafx.runtime.sequence;
+import java.util.Arrays;
 import com.sun.javafx.runtime.FXBase;
 import com.sun.javafx.runtime.FXObject;
 
@@ -69,8 +70,34 @@ public abstract class BoundFor<T, PT> extends FXBase {
 
     public int partResultVarNum; // This gets magically assigned when a part is created
 
+    /*
+     * The parts are kept in a gap buffer: part i is parts[i] if i < gapStart,
+     * and parts[i + gapEnd - gapStart] otherwise.  Replacing parts moves the
+     * gap to the edit, so the array is only reallocated when the gap is
+     * used up, and a run of edits at the same place, such as inserts at the
+     * front, does not move the other parts at all.
+     */
     protected FXForPart<PT>[] parts;
     protected int numParts;
+    private int gapStart;
+    private int gapEnd;
+
+    /*
+     * If the parts don't depend on their index, the index variable of a part
+     * holds a stamp, which is fixed for the life of the part, instead of the
+     * index.  So inserting or deleting parts does not have to adjust every
+     * following part.  slotOfStamp maps a stamp to the slot of its part in
+     * the parts array, and stampOfSlot maps a slot back to its stamp.
+     */
+    private int[] slotOfStamp;
+    private int[] stampOfSlot;
+    private int[] freeStamps;
+    private int numFreeStamps;
+    private int numStamps;
+
+    // True if parts were replaced without decaching the lengths
+    private boolean lengthsStale;
+
     protected int lowestInvalidPart;            // lowest part index that is invalid
     protected int highestInvalidPart = -1;      // highest part index that is invalid, negative means none
     protected int pendingTriggers = 0;          // number of invalidations seen minus number of triggers seen
@@ -96,7 +123,10 @@ public abstract class BoundFor<T, PT> extends FXBase {
     public boolean update$(FXObject src, final int depNum, int startPos, int endPos, int newLength, final int phase) {
         if (state == BOUND_FOR_STATE_UNINITIALIZED || inWholesaleUpdate)
             return true;
-        int ipart = ((FXForPart) src).getIndex$();
+        // Only the parts of this bound for are bound to it.
+        @SuppressWarnings("unchecked")
+        FXForPart<PT> part = (FXForPart<PT>) src;
+        int ipart = partIndex(part);
         if ((phase & PHASE_TRANS$PHASE) == PHASE$INVALIDATE) {
             if (DEBUG) System.err.println("inv update$ id: " + forVarNum + ", ipart: " + ipart + ", " + lowestInvalidPart + " ... " + highestInvalidPart);
             if (highestInvalidPart < 0) {
@@ -152,7 +182,7 @@ public abstract class BoundFor<T, PT> extends FXBase {
         int oldEndPos = cachedCumLength(highestInvalidPart + 1);
 
         restoreValidState(lowestInvalidPart, highestInvalidPart + 1);
-        decacheLengths();
+        decacheLengths(lowestInvalidPart, highestInvalidPart + 1);
         int newEndPos = cumLength(highestInvalidPart + 1);
         fireTrigger(oldStartPos, oldEndPos, newEndPos);
         return true;
@@ -162,6 +192,7 @@ public abstract class BoundFor<T, PT> extends FXBase {
     protected final void triggerAll() {
         assert pendingTriggers == 0;
         int previousSize = decacheLengths();
+        lengthsStale = false;
         restoreValidState(0, numParts);
         if (DEBUG) System.err.println("!trig all id: " + forVarNum + ", previousSize: " + previousSize + ", sizeAtLastTrigger: " + sizeAtLastTrigger);
         fireTrigger(0, previousSize, sizeAtLastTrigger);
@@ -242,6 +273,10 @@ public abstract class BoundFor<T, PT> extends FXBase {
             // Install new parts
             parts = newParts;
             numParts = newNumParts;
+            gapStart = gapEnd = newNumParts;
+            if (!dependsOnIndex) {
+                stampOfSlot = new int[newNumParts];
+            }
 
             // Fill in the new parts
             buildParts(0, insertedParts);
@@ -263,29 +298,24 @@ public abstract class BoundFor<T, PT> extends FXBase {
 
             if (newNumParts != numParts) {
                 for (int ips = endPartCopy; ips < endPart; ++ips) {
-                    removeDependent$(parts[ips], partResultVarNum, this);
+                    removeDependent$(getPart(ips), partResultVarNum, this);
                 }
 
-                // Allocate the new elements
-                FXForPart<PT>[] newParts = (FXForPart<PT>[]) new FXForPart[newNumParts];
-
-                // Copy the existing parts
-                System.arraycopy(parts, 0, newParts, 0, endPartCopy);
-                System.arraycopy(parts, endPart, newParts, newEndPart, trailingLength);
-
-                // Install new parts
-                parts = newParts;
-                numParts = newNumParts;
+                // Remove the old parts and make room for the new ones
+                replaceSlots(endPartCopy, endPart, newEndPart - endPartCopy);
 
                 // Fill in the new parts (if any)
                 buildParts(endPartCopy, newEndPart);
             }
         }
 
-        // Update the trailing indices -- need indices for internal bookkeeping, always update
+        // Update the trailing indices, if the parts see them.  Otherwise the
+        // indices are stamps, and don't change.
         assert startPart + insertedParts + trailingLength == numParts;
-        for (int ips = newEndPart; ips < numParts; ++ips) {
-            getPart(ips).adjustIndex$(deltaParts);
+        if (dependsOnIndex) {
+            for (int ips = newEndPart; ips < numParts; ++ips) {
+                getPart(ips).adjustIndex$(deltaParts);
+            }
         }
 
         state = BOUND_FOR_STATE_PARTS_UPDATED;
@@ -298,7 +328,8 @@ public abstract class BoundFor<T, PT> extends FXBase {
                 // Trying to change parts and do individual update at the same time -- invalidate everything
                 triggerAll();
             } else {
-                int previousSize = decacheLengths();
+                int previousSize = dependsOnIndex || lengthsStale ? decacheLengths() : decacheLengths(startPart, endPart, newEndPart);
+                lengthsStale = false;
                 if (dependsOnIndex) {
                     // We depend on indices, everything after the start point is invalid
                     restoreValidState(startPart, numParts);
@@ -306,14 +337,33 @@ public abstract class BoundFor<T, PT> extends FXBase {
                 } else {
                     // Calculate the inserted length (in the new parts)
                     restoreValidState(startPart, newEndPart);
-                    fireTrigger(oldStartPos, oldEndPos, cumLength(newEndPart));
+                    fireTrigger(oldStartPos, oldEndPos, cachedCumLength(newEndPart));
                 }
             }
-         }
+        } else {
+            lengthsStale = true;
+        }
     }
 
     protected abstract int decacheLengths();
 
+    /**
+     * Like decacheLengths, when only the sizes of parts lowPart up to
+     * highPart-1 may have changed, and no parts were added or removed.
+     */
+    protected int decacheLengths(int lowPart, int highPart) {
+        return decacheLengths();
+    }
+
+    /**
+     * Like decacheLengths, when parts startPart up to endPart-1 have just
+     * been replaced by parts startPart up to newEndPart-1, and the other
+     * parts are unchanged.
+     */
+    protected int decacheLengths(int startPart, int endPart, int newEndPart) {
+        return decacheLengths();
+    }
+
     void showStates(String label) {
         for (int ips = 0; ips < numParts; ++ips) {
             System.err.print(getPart(ips).getFlags$(partResultVarNum) & VFLGS$STATE_MASK);
@@ -342,7 +392,148 @@ public abstract class BoundFor<T, PT> extends FXBase {
     }
 
     protected FXForPart<PT> getPart(int ipart) {
-        return parts[ipart];
+        return parts[partSlot(ipart)];
+    }
+
+    /** The slot of part ipart in the parts array. */
+    protected final int partSlot(int ipart) {
+        return ipart < gapStart ? ipart : ipart + gapEnd - gapStart;
+    }
+
+    /** The part in a slot of the parts array, which must not be in the gap. */
+    protected final int slotPart(int slot) {
+        return slot < gapStart ? slot : slot - (gapEnd - gapStart);
+    }
+
+    /**
+     * Called after count parts have been moved from slot from to slot to.
+     * The slots they left that they don't now occupy are in the gap.
+     */
+    protected void partSlotsMoved(int from, int to, int count) {
+    }
+
+    /**
+     * Called after the parts in slots from up to to-1 have been removed, and
+     * the slots added to the gap.
+     */
+    protected void partSlotsCleared(int from, int to) {
+    }
+
+    /**
+     * Called after the parts array has been reallocated.  The parts before
+     * the gap kept their slots, and the parts from slot oldGapEnd on have
+     * been moved to follow the new gap.
+     */
+    protected void partSlotsGrown(int oldGapEnd) {
+    }
+
+    /** The current index of a part. */
+    protected int partIndex(FXForPart<PT> part) {
+        int index = part.getIndex$();
+        if (dependsOnIndex) {
+            return index;
+        }
+        return slotPart(slotOfStamp[index]);
+    }
+
+    /**
+     * Remove parts startPart up to endPart-1 from the parts array, and leave
+     * room for insertedParts parts at startPart, to be filled in by buildParts.
+     */
+    private void replaceSlots(int startPart, int endPart, int insertedParts) {
+        // Move the gap to endPart.
+        if (endPart < gapStart) {
+            int count = gapStart - endPart;
+            moveSlots(endPart, gapEnd - count, count);
+            gapStart = endPart;
+            gapEnd -= count;
+        } else if (endPart > gapStart) {
+            int count = endPart - gapStart;
+            moveSlots(gapEnd, gapStart, count);
+            gapStart = endPart;
+            gapEnd += count;
+        }
+        // Drop the removed parts into the gap.
+        for (int slot = startPart; slot < endPart; ++slot) {
+            if (!dependsOnIndex) {
+                if (freeStamps == null || numFreeStamps == freeStamps.length) {
+                    int[] newFree = new int[numFreeStamps * 2 + 16];
+                    if (freeStamps != null) {
+                        System.arraycopy(freeStamps, 0, newFree, 0, numFreeStamps);
+                    }
+                    freeStamps = newFree;
+                }
+                freeStamps[numFreeStamps++] = stampOfSlot[slot];
+            }
+            parts[slot] = null;
+        }
+        partSlotsCleared(startPart, endPart);
+        gapStart = startPart;
+        int newNumParts = numParts - (endPart - startPart) + insertedParts;
+        if (gapEnd - gapStart < insertedParts) {
+            growSlots(newNumParts + (newNumParts >> 1) + 8);
+        }
+        gapStart += insertedParts;
+        numParts = newNumParts;
+    }
+
+    private void moveSlots(int from, int to, int count) {
+        System.arraycopy(parts, from, parts, to, count);
+        if (from > to) {
+            Arrays.fill(parts, Math.max(from, to + count), from + count, null);
+        } else {
+            Arrays.fill(parts, from, Math.min(to, from + count), null);
+        }
+        if (!dependsOnIndex) {
+            System.arraycopy(stampOfSlot, from, stampOfSlot, to, count);
+            for (int slot = to; slot < to + count; ++slot) {
+                slotOfStamp[stampOfSlot[slot]] = slot;
+            }
+        }
+        partSlotsMoved(from, to, count);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void growSlots(int capacity) {
+        int oldCapacity = parts.length;
+        int tail = oldCapacity - gapEnd;
+        int newGapEnd = capacity - tail;
+        FXForPart<PT>[] newParts = (FXForPart<PT>[]) new FXForPart[capacity];
+        System.arraycopy(parts, 0, newParts, 0, gapStart);
+        System.arraycopy(parts, gapEnd, newParts, newGapEnd, tail);
+        parts = newParts;
+        if (!dependsOnIndex) {
+            int[] newStamps = new int[capacity];
+            System.arraycopy(stampOfSlot, 0, newStamps, 0, gapStart);
+            System.arraycopy(stampOfSlot, gapEnd, newStamps, newGapEnd, tail);
+            stampOfSlot = newStamps;
+            for (int slot = newGapEnd; slot < capacity; ++slot) {
+                slotOfStamp[stampOfSlot[slot]] = slot;
+            }
+        }
+        int oldGapEnd = gapEnd;
+        gapEnd = newGapEnd;
+        partSlotsGrown(oldGapEnd);
+    }
+
+    /** Allocate a stamp for a new part in the given slot. */
+    private int newStamp(int slot) {
+        int stamp;
+        if (numFreeStamps > 0) {
+            stamp = freeStamps[--numFreeStamps];
+        } else {
+            if (slotOfStamp == null || numStamps == slotOfStamp.length) {
+                int[] newSlots = new int[Math.max(numStamps + (numStamps >> 1) + 8, parts.length)];
+                if (slotOfStamp != null) {
+                    System.arraycopy(slotOfStamp, 0, newSlots, 0, numStamps);
+                }
+                slotOfStamp = newSlots;
+            }
+            stamp = numStamps++;
+        }
+        slotOfStamp[stamp] = slot;
+        stampOfSlot[slot] = stamp;
+        return stamp;
     }
 
     protected final void blanketInvalidationOfBoundFor() {
@@ -354,10 +545,12 @@ public abstract class BoundFor<T, PT> extends FXBase {
         part.setInductionVar$(container.elem$(inductionSeqVarNum, ipart));
     }
 
+    @SuppressWarnings("unchecked")
     protected void buildParts(int ipFrom, int ipTo) {
         for (int ips = ipFrom; ips < ipTo; ++ips) {
-            FXForPart part = makeForPart$(ips);
-            parts[ips] = part;
+            int slot = partSlot(ips);
+            FXForPart<PT> part = makeForPart$(dependsOnIndex ? ips : newStamp(slot));
+            parts[slot] = part;
             syncInductionVar(ips);
             addDependent$(part, partResultVarNum, this, 0);
         }
@@ -22,13 +22,28 @@
  */
 
 package com.sun.javafx.runtime.sequence;
+import java.util.Arrays;
 import com.sun.javafx.runtime.FXObject;
 
 public abstract class BoundForOverVaryingAbstract<T, PT> extends BoundFor<T, PT> {
 
-    protected int[] cumulatedLengths;
+    /*
+     * The sizes of the parts as of the last decacheLengths, by slot of the
+     * parts array (slots in the gap have size zero), and a Fenwick (binary
+     * indexed) tree over them: sizeTree[k] is the sum of the sizes in slots
+     * k-(k&-k) up to k-1.  This gives the start position of a part, and the
+     * part containing a position, in O(log numParts) time.  Because the tree
+     * follows the slots, inserting or removing parts at the gap, or changing
+     * the size of a part, only updates O(log numParts) entries per part.
+     */
+    private int[] partSizes;
+    private int[] sizeTree;
+    private int cachedParts;
+
+    // The part found by the last lookup, its slot, and its start position.
+    private int cachePart = -1;
+    private int cacheSlot;
     private int cacheIndex;
-    private int cachePart;
 
     public BoundForOverVaryingAbstract(FXObject container, int forVarNum, int inductionSeqVarNum, boolean dependsOnIndex) {
         super(container, forVarNum, inductionSeqVarNum, dependsOnIndex);
@@ -52,25 +67,232 @@ public abstract class BoundForOverVaryingAbstract<T, PT> extends BoundFor<T, PT>
 
     @Override
     protected int decacheLengths() {
-        cachePart = 0;
+        cachePart = -1;
         int previousSize = sizeAtLastTrigger;
-        if (cumulatedLengths == null ||
-                    cumulatedLengths.length < numParts ||
-                    cumulatedLengths.length > (numParts+10)) {
-            cumulatedLengths = new int[numParts];
+        int capacity = parts.length;
+        if (partSizes == null || partSizes.length != capacity) {
+            partSizes = new int[capacity];
+            sizeTree = new int[capacity + 1];
+        } else {
+            Arrays.fill(partSizes, 0);
+        }
+        inWholesaleUpdate = true;
+        for (int ips = 0; ips < numParts; ++ips) {
+            partSizes[partSlot(ips)] = size(ips);
         }
-        sizeAtLastTrigger = calculateCumLength(numParts, cumulatedLengths);
+        inWholesaleUpdate = false;
+        cachedParts = numParts;
+        sizeAtLastTrigger = buildSizeTree();
         return previousSize;
     }
 
-    private int calculateCumLength(int ipart, int[] lengths) {
+    @Override
+    protected int decacheLengths(int startPart, int endPart, int newEndPart) {
+        // The slots have been kept up to date; only the new parts are unsized
+        if (cachedParts != numParts - (newEndPart - endPart) || !sizesFollowSlots()) {
+            return decacheLengths();
+        }
+        return resize(startPart, newEndPart);
+    }
+
+    @Override
+    protected int decacheLengths(int lowPart, int highPart) {
+        if (cachedParts != numParts || !sizesFollowSlots()) {
+            return decacheLengths();
+        }
+        return resize(lowPart, highPart);
+    }
+
+    /** Update the cached sizes of parts lowPart up to highPart-1. */
+    private int resize(int lowPart, int highPart) {
+        cachePart = -1;
+        int previousSize = sizeAtLastTrigger;
+        inWholesaleUpdate = true;
+        for (int ips = lowPart; ips < highPart; ++ips) {
+            int slot = partSlot(ips);
+            int delta = size(ips) - partSizes[slot];
+            if (delta != 0) {
+                partSizes[slot] += delta;
+                addSize(slot, delta);
+            }
+        }
+        inWholesaleUpdate = false;
+        cachedParts = numParts;
+        sizeAtLastTrigger = sumSlots(partSizes.length);
+        return previousSize;
+    }
+
+    private boolean sizesFollowSlots() {
+        return partSizes != null && partSizes.length == parts.length;
+    }
+
+    @Override
+    protected void partSlotsMoved(int from, int to, int count) {
+        if (!sizesFollowSlots()) {
+            return;
+        }
+        cachePart = -1;
+        int lo = Math.min(from, to);
+        int hi = Math.max(from, to) + count;
+        boolean update = count * (32 - Integer.numberOfLeadingZeros(partSizes.length)) < hi - lo;
+        if (update) {
+            for (int i = 0; i < count; ++i) {
+                int sz = partSizes[from + i];
+                if (sz != 0) {
+                    addSize(from + i, -sz);
+                    addSize(to + i, sz);
+                }
+            }
+        }
+        System.arraycopy(partSizes, from, partSizes, to, count);
+        if (from > to) {
+            Arrays.fill(partSizes, Math.max(from, to + count), from + count, 0);
+        } else {
+            Arrays.fill(partSizes, from, Math.min(to, from + count), 0);
+        }
+        if (!update) {
+            buildSizeTree(lo, hi);
+        }
+    }
+
+    @Override
+    protected void partSlotsCleared(int from, int to) {
+        if (!sizesFollowSlots()) {
+            return;
+        }
+        for (int slot = from; slot < to; ++slot) {
+            int sz = partSizes[slot];
+            if (sz != 0) {
+                partSizes[slot] = 0;
+                addSize(slot, -sz);
+            }
+        }
+    }
+
+    @Override
+    protected void partSlotsGrown(int oldGapEnd) {
+        if (partSizes == null) {
+            return;
+        }
+        cachePart = -1;
+        // The old gap holds zeros, so copying through it is harmless
+        int oldCapacity = partSizes.length;
+        int capacity = parts.length;
+        int[] newSizes = new int[capacity];
+        System.arraycopy(partSizes, 0, newSizes, 0, oldGapEnd);
+        System.arraycopy(partSizes, oldGapEnd, newSizes, capacity - (oldCapacity - oldGapEnd), oldCapacity - oldGapEnd);
+        partSizes = newSizes;
+        sizeTree = new int[capacity + 1];
+        buildSizeTree();
+    }
+
+    /**
+     * Build sizeTree from partSizes, bottom-up in linear time.  Only
+     * integer arithmetic, with no calls into the parts.
+     * Returns the total size.
+     */
+    private int buildSizeTree() {
+        int capacity = partSizes.length;
+        int sum = 0;
+        for (int k = 1; k <= capacity; ++k) {
+            int sz = partSizes[k - 1];
+            sizeTree[k] = sz;
+            sum += sz;
+        }
+        for (int k = 1; k <= capacity; ++k) {
+            int parent = k + (k & -k);
+            if (parent <= capacity) {
+                sizeTree[parent] += sizeTree[k];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Rebuild the entries of sizeTree that cover any of the slots lo up to
+     * hi-1, after the sizes in those slots have been rearranged, in
+     * O(hi - lo) time.  These are the entries for slots lo up to hi-1,
+     * built bottom-up as in buildSizeTree(), and the entries above them
+     * that also cover slot hi-1, which are summed from their children.
+     */
+    private void buildSizeTree(int lo, int hi) {
+        int capacity = partSizes.length;
+        for (int k = lo + 1; k <= hi; ++k) {
+            sizeTree[k] = partSizes[k - 1];
+        }
+        // The unchanged entries below lo whose parents are being rebuilt
+        for (int k = lo; k > 0; k -= k & -k) {
+            int parent = k + (k & -k);
+            if (parent <= hi) {
+                sizeTree[parent] += sizeTree[k];
+            }
+        }
+        for (int k = lo + 1; k <= hi; ++k) {
+            int parent = k + (k & -k);
+            if (parent <= hi) {
+                sizeTree[parent] += sizeTree[k];
+            }
+        }
+        for (int k = hi + (hi & -hi); k <= capacity && hi > 0; k += k & -k) {
+            int sum = partSizes[k - 1];
+            int low = k - (k & -k);
+            for (int j = k - 1; j > low; j -= j & -j) {
+                sum += sizeTree[j];
+            }
+            sizeTree[k] = sum;
+        }
+    }
+
+    private void addSize(int slot, int delta) {
+        for (int k = slot + 1; k < sizeTree.length; k += k & -k) {
+            sizeTree[k] += delta;
+        }
+    }
+
+    /** Sum of the cached sizes in slots 0 up to slot-1. */
+    private int sumSlots(int slot) {
+        int sum = 0;
+        for (int k = slot; k > 0; k -= k & -k) {
+            sum += sizeTree[k];
+        }
+        return sum;
+    }
+
+    /** Sum of the cached sizes of parts 0 up to ipart-1. */
+    private int sumSizes(int ipart) {
+        if (partSizes == null) {
+            return 0;
+        }
+        return sumSlots(ipart < numParts ? partSlot(ipart) : partSizes.length);
+    }
+
+    /**
+     * Set cachePart to the part containing position index, and cacheIndex
+     * to the start position of that part.
+     * Requires {@code 0 <= index < sumSlots(partSizes.length)}.
+     */
+    private void findPart(int index) {
+        int capacity = partSizes.length;
+        int k = 0;
+        int start = 0;
+        for (int bit = Integer.highestOneBit(capacity); bit != 0; bit >>= 1) {
+            int next = k + bit;
+            if (next <= capacity && start + sizeTree[next] <= index) {
+                k = next;
+                start += sizeTree[next];
+            }
+        }
+        // Slot k has a non-zero size, so it is not in the gap
+        cacheSlot = k;
+        cachePart = slotPart(k);
+        cacheIndex = start;
+    }
+
+    private int calculateCumLength(int ipart) {
         inWholesaleUpdate = true;
         int sum = 0;
         for (int ips = 0; ips < ipart; ++ips) {
             sum += size(ips);
-            if (lengths != null) {
-                cumulatedLengths[ips] = sum;
-            }
         }
         inWholesaleUpdate = false;
         return sum;
@@ -81,9 +303,9 @@ public abstract class BoundForOverVaryingAbstract<T, PT> extends BoundFor<T, PT>
             return 0;
         } else if (state != BOUND_FOR_STATE_PARTS_STABLE || pendingTriggers > 0) {
             // Calculate without touching cache
-            return calculateCumLength(ipart, null);
+            return calculateCumLength(ipart);
         } else {
-            return cumulatedLengths[ipart - 1];
+            return sumSizes(ipart);
         }
     }
 
@@ -91,7 +313,7 @@ public abstract class BoundForOverVaryingAbstract<T, PT> extends BoundFor<T, PT>
         if (ipart <= 0) {
             return 0;
         } else {
-            return cumulatedLengths[ipart - 1];
+            return sumSizes(ipart);
         }
     }
 
@@ -101,37 +323,25 @@ public abstract class BoundForOverVaryingAbstract<T, PT> extends BoundFor<T, PT>
         if (index < 0)
             return null;
 
-        int i = 0;
-        int cumPrev = 0;
         if (state != BOUND_FOR_STATE_PARTS_STABLE || pendingTriggers > 0) {
             // Calculate without touching cache
-            for (;; i++) {
-                if (i >= numParts) {
-                    return null;
-                }
-                int cum = cumLength(i + 1);
-                if (index < cum) {
-                    return get(i, index - cumPrev);
-                }
-                cumPrev = cum;
+            int i = 0;
+            int cumPrev = 0;
+            inWholesaleUpdate = true;
+            for (; i < numParts; i++) {
+                int sz = size(i);
+                if (index < cumPrev + sz)
+                    break;
+                cumPrev += sz;
             }
+            inWholesaleUpdate = false;
+            return i < numParts ? get(i, index - cumPrev) : null;
         }
-        // FIXME - should use binary search if not in cache.
-        if (index >= cacheIndex) {
-            i = cachePart;
-            cumPrev = cumLength(i);
-        }
-        for (;; i++) {
-            if (i >= numParts)
+        if (cachePart < 0 || index < cacheIndex || index >= cacheIndex + partSizes[cacheSlot]) {
+            if (index >= sumSlots(partSizes.length))
                 return null;
-            int cum = cumLength(i+1);
-            if (index < cum) {
-                cachePart = i;
-                cacheIndex = cumPrev;
-                return get(i, index-cumPrev);
-            }
-            cumPrev = cum;
+            findPart(index);
         }
+        return get(cachePart, index - cacheIndex);
     }
 }
-
@@ -0,0 +1,498 @@
+/*
+ * Copyright 2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.javafx.runtime.sequence;
+
+import com.sun.javafx.runtime.TypeInfo;
+import com.sun.javafx.runtime.Util;
+
+/**
+ * A persistent sequence, stored as a balanced (AVL) tree of small chunks.
+ * Each chunk is an ArraySequence of the element type, so primitive elements
+ * stay unboxed.  Chunks are never modified once built (they are marked as
+ * maximally shared), so a replaceSlice, insert, delete, slice or concat
+ * builds a new tree that shares all untouched chunks with the old one, in
+ * O(log n) plus the size of the inserted values.
+ *
+ * Sequences switch to this representation in {@code Sequences.replaceSlice}
+ * and {@code Sequences.insert}: an edit of a shared ArraySequence of at
+ * least {@code javafx.sequence.chunkThreshold} elements (default 4096, 0
+ * disables) would otherwise copy the whole array, typically because an
+ * on-replace trigger holds on to the old value.  Like an ArraySequence,
+ * a ChunkedSequence counts its owners; once it is no longer shared, the
+ * next edit turns it back into an unshared ArraySequence, which is then
+ * updated in place, so chunks only take the place of copies on write.  It
+ * is also turned back once it has shrunk below half the threshold.
+ */
+class ChunkedSequence<T> extends AbstractSequence<T> {
+
+    static final int threshold = Math.max(0, Util.getIntProperty("javafx.sequence.chunkThreshold", 4096));
+
+    /** Largest number of elements in a chunk. */
+    static final int MAX_CHUNK = 256;
+    /** Chunks are kept at least this large, except in a single-chunk tree. */
+    static final int MIN_CHUNK = MAX_CHUNK / 4;
+
+    static abstract class Node {
+        final int size;
+        final int height;
+        Node(int size, int height) {
+            this.size = size;
+            this.height = height;
+        }
+    }
+
+    static final class Leaf extends Node {
+        final ArraySequence<?> chunk;
+        Leaf(ArraySequence<?> chunk) {
+            super(chunk.size(), 0);
+            this.chunk = chunk;
+        }
+    }
+
+    static final class Branch extends Node {
+        final Node left, right;
+        Branch(Node left, Node right) {
+            super(left.size + right.size, 1 + Math.max(left.height, right.height));
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    private final Node root;
+
+    /** The number of owners, counted as for {@link ArraySequence}. */
+    private int sharing;
+
+    private ChunkedSequence(TypeInfo<T> ti, Node root) {
+        super(ti);
+        this.root = root;
+    }
+
+    /** Copy a sequence into a new ChunkedSequence. */
+    @SuppressWarnings("unchecked")
+    static <T> ChunkedSequence<T> make(Sequence<? extends T> seq) {
+        TypeInfo<T> ti = (TypeInfo<T>) seq.getElementType();
+        return new ChunkedSequence<T>(ti, build(ti, seq, 0, seq.size()));
+    }
+
+    /**
+     * True if an edit of this sequence should be done by {@link #replace}:
+     * it is a shared ChunkedSequence, or a shared ArraySequence that is large
+     * enough that copying it is worse than chunking it.  An unshared
+     * ChunkedSequence is copied into an ArraySequence by the caller instead.
+     */
+    static boolean useFor(Sequence<?> seq) {
+        if (seq instanceof ChunkedSequence)
+            return ((ChunkedSequence<?>) seq).isShared();
+        return threshold > 0 && seq instanceof ArraySequence
+                && ((ArraySequence<?>) seq).isShared() && seq.size() >= threshold;
+    }
+
+    /**
+     * Replace the elements from startPos (inclusive) to endPos (exclusive)
+     * by newValues, which may be null.  Assumes {@code useFor(oldValue)} and
+     * that the positions have been clipped to the sequence.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Sequence<T> replace(Sequence<? extends T> oldValue, int startPos, int endPos, Sequence<? extends T> newValues) {
+        ChunkedSequence<T> chunked = oldValue instanceof ChunkedSequence ? (ChunkedSequence<T>) oldValue : make(oldValue);
+        ChunkedSequence<T> result = chunked.replace(startPos, endPos, newValues);
+        int size = result.size();
+        if (size >= threshold / 2 && size > MAX_CHUNK) {
+            result.incrementSharing();
+            return result;
+        }
+        ArraySequence<T> arr = result.getElementType().emptySequence.makeNew(size);
+        arr.add(result);
+        arr.incrementSharing();
+        return arr;
+    }
+
+    @Override
+    public int size() {
+        return root == null ? 0 : root.size;
+    }
+
+    @Override
+    public void incrementSharing() {
+        if (sharing < Integer.MAX_VALUE)
+            sharing++;
+    }
+
+    @Override
+    public void decrementSharing() {
+        if (sharing > 0 && sharing < Integer.MAX_VALUE)
+            sharing--;
+    }
+
+    boolean isShared() {
+        return sharing > 1;
+    }
+
+    /** A leaf and the position of its first element. */
+    static final class Cursor {
+        final Leaf leaf;
+        final int start;
+        Cursor(Leaf leaf, int start) {
+            this.leaf = leaf;
+            this.start = start;
+        }
+    }
+
+    /** The most recently used leaf, so that sequential access does not walk the tree every time. */
+    private Cursor last;
+
+    /** Find the leaf containing position, which must be in range. */
+    private Cursor leafAt(int position) {
+        Cursor cursor = last;
+        if (cursor != null && position >= cursor.start && position - cursor.start < cursor.leaf.size)
+            return cursor;
+        Node node = root;
+        int start = 0;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            int leftSize = branch.left.size;
+            if (position - start < leftSize)
+                node = branch.left;
+            else {
+                start += leftSize;
+                node = branch.right;
+            }
+        }
+        cursor = new Cursor((Leaf) node, start);
+        last = cursor;
+        return cursor;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int position) {
+        if (position < 0 || position >= size())
+            return getDefaultValue();
+        Cursor cursor = leafAt(position);
+        return (T) cursor.leaf.chunk.get(position - cursor.start);
+    }
+
+    @Override
+    public boolean getAsBoolean(int position) {
+        if (position < 0 || position >= size())
+            return super.getAsBoolean(position);
+        Cursor cursor = leafAt(position);
+        return cursor.leaf.chunk.getAsBoolean(position - cursor.start);
+    }
+
+    @Override
+    public char getAsChar(int position) {
+        if (position < 0 || position >= size())
+            return super.getAsChar(position);
+        Cursor cursor = leafAt(position);
+        return cursor.leaf.chunk.getAsChar(position - cursor.start);
+    }
+
+    @Override
+    public byte getAsByte(int position) {
+        if (position < 0 || position >= size())
+            return super.getAsByte(position);
+        Cursor cursor = leafAt(position);
+        return cursor.leaf.chunk.getAsByte(position - cursor.start);
+    }
+
+    @Override
+    public short getAsShort(int position) {
+        if (position < 0 || position >= size())
+            return super.getAsShort(position);
+        Cursor cursor = leafAt(position);
+        return cursor.leaf.chunk.getAsShort(position - cursor.start);
+    }
+
+    @Override
+    public int getAsInt(int position) {
+        if (position < 0 || position >= size())
+            return super.getAsInt(position);
+        Cursor cursor = leafAt(position);
+        return cursor.leaf.chunk.getAsInt(position - cursor.start);
+    }
+
+    @Override
+    public long getAsLong(int position) {
+        if (position < 0 || position >= size())
+            return super.getAsLong(position);
+        Cursor cursor = leafAt(position);
+        return cursor.leaf.chunk.getAsLong(position - cursor.start);
+    }
+
+    @Override
+    public float getAsFloat(int position) {
+        if (position < 0 || position >= size())
+            return super.getAsFloat(position);
+        Cursor cursor = leafAt(position);
+        return cursor.leaf.chunk.getAsFloat(position - cursor.start);
+    }
+
+    @Override
+    public double getAsDouble(int position) {
+        if (position < 0 || position >= size())
+            return super.getAsDouble(position);
+        Cursor cursor = leafAt(position);
+        return cursor.leaf.chunk.getAsDouble(position - cursor.start);
+    }
+
+    @Override
+    public void toArray(int sourceOffset, int length, Object[] dest, int destOffset) {
+        copy(root, sourceOffset, sourceOffset + length, dest, destOffset);
+    }
+
+    @Override
+    public void toArray(int sourceOffset, int length, boolean[] dest, int destOffset) {
+        copy(root, sourceOffset, sourceOffset + length, dest, destOffset);
+    }
+
+    @Override
+    public void toArray(int sourceOffset, int length, char[] dest, int destOffset) {
+        copy(root, sourceOffset, sourceOffset + length, dest, destOffset);
+    }
+
+    @Override
+    public void toArray(int sourceOffset, int length, byte[] dest, int destOffset) {
+        copy(root, sourceOffset, sourceOffset + length, dest, destOffset);
+    }
+
+    @Override
+    public void toArray(int sourceOffset, int length, short[] dest, int destOffset) {
+        copy(root, sourceOffset, sourceOffset + length, dest, destOffset);
+    }
+
+    @Override
+    public void toArray(int sourceOffset, int length, int[] dest, int destOffset) {
+        copy(root, sourceOffset, sourceOffset + length, dest, destOffset);
+    }
+
+    @Override
+    public void toArray(int sourceOffset, int length, long[] dest, int destOffset) {
+        copy(root, sourceOffset, sourceOffset + length, dest, destOffset);
+    }
+
+    @Override
+    public void toArray(int sourceOffset, int length, float[] dest, int destOffset) {
+        copy(root, sourceOffset, sourceOffset + length, dest, destOffset);
+    }
+
+    @Override
+    public void toArray(int sourceOffset, int length, double[] dest, int destOffset) {
+        copy(root, sourceOffset, sourceOffset + length, dest, destOffset);
+    }
+
+    /** Copy elements from (inclusive) to to (exclusive) of node into the array dest. */
+    private static void copy(Node node, int from, int to, Object dest, int destOffset) {
+        while (from < to) {
+            if (node instanceof Leaf) {
+                Sequences.toArray(((Leaf) node).chunk, from, to - from, dest, destOffset);
+                return;
+            }
+            Branch branch = (Branch) node;
+            int leftSize = branch.left.size;
+            if (from < leftSize) {
+                int leftTo = Math.min(to, leftSize);
+                copy(branch.left, from, leftTo, dest, destOffset);
+                destOffset += leftTo - from;
+                from = leftTo;
+            }
+            else {
+                node = branch.right;
+                from -= leftSize;
+                to -= leftSize;
+            }
+        }
+    }
+
+    /** A persistent slice; shares all chunks except (at most) the two end ones. */
+    @Override
+    public Sequence<T> getSlice(int startPos, int endPos) {
+        int size = size();
+        startPos = Math.max(startPos, 0);
+        endPos = Math.min(endPos, size);
+        if (startPos >= endPos)
+            return getEmptySequence();
+        if (endPos - startPos <= MAX_CHUNK)
+            return Sequences.subsequence(this, startPos, endPos);
+        return replace(endPos, size, null).replace(0, startPos, null);
+    }
+
+    /**
+     * Return a new ChunkedSequence where the elements from startPos
+     * (inclusive) to endPos (exclusive) are replaced by newValues.
+     *
+     * The tree is cut at chunk boundaries only: the chunks overlapping the
+     * edited range are merged with the new values and re-chunked, extending
+     * the range into a neighbouring chunk if the result would be too small.
+     * So every chunk has between MIN_CHUNK and MAX_CHUNK elements, except
+     * when the whole sequence is a single chunk, or newValues is itself a
+     * ChunkedSequence whose tree is spliced in as is.  That is only done if
+     * it has the same element type; otherwise its chunks could hold, say,
+     * ints where this sequence holds floats, so it is copied instead.
+     */
+    ChunkedSequence<T> replace(int startPos, int endPos, Sequence<? extends T> newValues) {
+        int size = size();
+        int inserted = newValues == null ? 0 : newValues.size();
+        if (inserted == 0 && startPos == endPos)
+            return this;
+        int lo = startPos;
+        if (size > 0)
+            lo = leafAt(Math.min(lo, size - 1)).start;
+        int hi = endPos;
+        if (hi < size) {
+            Cursor cursor = leafAt(hi);
+            if (cursor.start != hi)
+                hi = cursor.start + cursor.leaf.size;
+        }
+        Node middle;
+        if (newValues instanceof ChunkedSequence && inserted > MAX_CHUNK
+                && newValues.getElementType() == ti) {
+            middle = join(join(build(ti, this, lo, startPos), ((ChunkedSequence<?>) newValues).root),
+                    build(ti, this, endPos, hi));
+        }
+        else {
+            while ((startPos - lo) + inserted + (hi - endPos) < MIN_CHUNK && (lo > 0 || hi < size)) {
+                if (hi < size)
+                    hi += leafAt(hi).leaf.size;
+                else
+                    lo = leafAt(lo - 1).start;
+            }
+            int total = (startPos - lo) + inserted + (hi - endPos);
+            ArraySequence<T> buffer = ti.emptySequence.makeNew(total);
+            buffer.replace(0, 0, this, lo, startPos, false);
+            if (inserted > 0)
+                buffer.replace(startPos - lo, startPos - lo, newValues, 0, inserted, false);
+            buffer.replace(total - (hi - endPos), total - (hi - endPos), this, endPos, hi, false);
+            middle = build(ti, buffer, 0, total);
+        }
+        Node result = join(join(prefix(root, lo), middle), suffix(root, hi));
+        return new ChunkedSequence<T>(ti, result);
+    }
+
+    /** Build a balanced tree of evenly sized chunks, holding elements start..end of seq. */
+    private static <T> Node build(TypeInfo<T> ti, Sequence<? extends T> seq, int start, int end) {
+        int length = end - start;
+        if (length <= 0)
+            return null;
+        int nchunks = (length + MAX_CHUNK - 1) / MAX_CHUNK;
+        return build(ti, seq, start, length, 0, nchunks, nchunks);
+    }
+
+    private static <T> Node build(TypeInfo<T> ti, Sequence<? extends T> seq, int start, int length, int lo, int hi, int nchunks) {
+        if (hi - lo == 1) {
+            int from = start + (int) ((long) length * lo / nchunks);
+            int to = start + (int) ((long) length * hi / nchunks);
+            ArraySequence<T> chunk = ti.emptySequence.makeNew(to - from);
+            chunk.replace(0, 0, seq, from, to, false);
+            chunk.setMaxShared();
+            return new Leaf(chunk);
+        }
+        int mid = (lo + hi) >>> 1;
+        return new Branch(build(ti, seq, start, length, lo, mid, nchunks),
+                build(ti, seq, start, length, mid, hi, nchunks));
+    }
+
+    /** The elements of node before position, which must be a chunk boundary. */
+    private static Node prefix(Node node, int position) {
+        if (node == null || position <= 0)
+            return null;
+        if (position >= node.size)
+            return node;
+        Branch branch = (Branch) node;
+        int leftSize = branch.left.size;
+        if (position <= leftSize)
+            return prefix(branch.left, position);
+        return join(branch.left, prefix(branch.right, position - leftSize));
+    }
+
+    /** The elements of node from position on, which must be a chunk boundary. */
+    private static Node suffix(Node node, int position) {
+        if (node == null || position >= node.size)
+            return null;
+        if (position <= 0)
+            return node;
+        Branch branch = (Branch) node;
+        int leftSize = branch.left.size;
+        if (position >= leftSize)
+            return suffix(branch.right, position - leftSize);
+        return join(suffix(branch.left, position), branch.right);
+    }
+
+    /**
+     * Concatenate two trees, keeping the result balanced.
+     * Takes time proportional to the difference in heights.
+     */
+    private static Node join(Node left, Node right) {
+        if (left == null)
+            return right;
+        if (right == null)
+            return left;
+        if (left.height > right.height + 1) {
+            Branch branch = (Branch) left;
+            return balance(branch.left, join(branch.right, right));
+        }
+        if (right.height > left.height + 1) {
+            Branch branch = (Branch) right;
+            return balance(join(left, branch.left), branch.right);
+        }
+        if (left instanceof Leaf && right instanceof Leaf
+                && (left.size < MIN_CHUNK || right.size < MIN_CHUNK)
+                && left.size + right.size <= MAX_CHUNK) {
+            return new Leaf(concat(((Leaf) left).chunk, ((Leaf) right).chunk));
+        }
+        return new Branch(left, right);
+    }
+
+    /** A new chunk holding the elements of left followed by those of right, which has the same element type. */
+    @SuppressWarnings("unchecked")
+    private static <T> ArraySequence<T> concat(ArraySequence<T> left, ArraySequence<?> right) {
+        ArraySequence<T> chunk = left.makeNew(left.size() + right.size());
+        chunk.add(left);
+        chunk.add((ArraySequence<T>) right);
+        chunk.setMaxShared();
+        return chunk;
+    }
+
+    /** Make a Branch of two trees whose heights differ by at most 2, rotating if needed. */
+    private static Node balance(Node left, Node right) {
+        if (left.height > right.height + 1) {
+            Branch l = (Branch) left;
+            if (l.left.height >= l.right.height)
+                return new Branch(l.left, new Branch(l.right, right));
+            Branch lr = (Branch) l.right;
+            return new Branch(new Branch(l.left, lr.left), new Branch(lr.right, right));
+        }
+        if (right.height > left.height + 1) {
+            Branch r = (Branch) right;
+            if (r.right.height >= r.left.height)
+                return new Branch(new Branch(left, r.left), r.right);
+            Branch rl = (Branch) r.left;
+            return new Branch(new Branch(left, rl.left), new Branch(rl.right, r.right));
+        }
+        return new Branch(left, right);
+    }
+}
@@ -59,6 +59,30 @@ class IntRangeSequence extends AbstractSequence<Integer> implements Sequence<Int
         this(start, bound, 1, exclusive);
     }
 
+    /** A range of the given size, rather than bound.  A step of zero is allowed. */
+    IntRangeSequence(TypeInfo<Integer> ti, int start, int step, int size) {
+        super(ti);
+        this.start = start;
+        this.step = step;
+        this.size = size;
+    }
+
+    /**
+     * The slice of size elements starting at position start and stepping by
+     * step, which is again a range.  Parameters are as for SubSequence.make.
+     */
+    IntRangeSequence slice(int size, int start, int step) {
+        return new IntRangeSequence(TypeInfo.Integer, this.start + start * this.step, this.step * step, size);
+    }
+
+    /**
+     * The sequence of {@code x * scale + offset} for each x in this range,
+     * which is again a range.  Int arithmetic wraps, so this is exact.
+     */
+    IntRangeSequence affine(int scale, int offset) {
+        return new IntRangeSequence(TypeInfo.Integer, start * scale + offset, step * scale, size);
+    }
+
     @Override
     public int size() {
         return size;
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.javafx.runtime.sequence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import com.sun.javafx.runtime.TypeInfo;
+
+/**
+ * A read-only sequence of Integer, Long, Float or Double elements, read
+ * directly from a region of a memory-mapped file.  Nothing is copied onto
+ * the heap when the sequence is created; elements are decoded when they are
+ * read, and toArray copies whole runs with the bulk buffer operations.
+ *
+ * Like other sequences it is immutable: the first insert, delete or
+ * replaceSlice on it copies the elements to an ArraySequence, as for any
+ * sequence that is not an unshared ArraySequence.  Slices are views and do
+ * not copy (see SubSequence).
+ *
+ * Mappings are made in segments of 1GB, so the region may be larger than
+ * the 2GB limit of a single MappedByteBuffer.  Sequences should be created
+ * with the Sequences.mapDoubles() etc factories.
+ */
+class MappedSequence<T> extends AbstractSequence<T> {
+    private static final int SEGMENT_SHIFT = 30;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    private final ByteBuffer[] segments;
+    private final int size;
+    /** log2 of the element size in bytes. */
+    private final int shift;
+
+    private MappedSequence(TypeInfo<T> ti, ByteBuffer[] segments, int size, int shift) {
+        super(ti);
+        this.segments = segments;
+        this.size = size;
+        this.shift = shift;
+    }
+
+    static <T> MappedSequence<T> map(TypeInfo<T> ti, File file, long offset, int count, ByteOrder order) throws IOException {
+        int shift;
+        switch (ti.type) {
+            case INT: case FLOAT: shift = 2; break;
+            case LONG: case DOUBLE: shift = 3; break;
+            default:
+                throw new IllegalArgumentException("Cannot map elements of type " + ti.type);
+        }
+        if (offset < 0 || count < 0)
+            throw new IllegalArgumentException("Negative offset or count");
+        long length = (long) count << shift;
+        int nsegments = (int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        ByteBuffer[] segments = new ByteBuffer[nsegments];
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (offset + length > channel.size())
+                throw new IOException("File " + file + " has fewer than " + count + " elements after offset " + offset);
+            for (int i = 0; i < nsegments; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                long segmentLength = Math.min(length - start, 1L << SEGMENT_SHIFT);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start, segmentLength).order(order);
+            }
+        }
+        finally {
+            // The mappings stay valid after the file is closed.
+            raf.close();
+        }
+        return new MappedSequence<T>(ti, segments, count, shift);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private ByteBuffer segment(int position) {
+        return segments[(int) (((long) position << shift) >>> SEGMENT_SHIFT)];
+    }
+
+    private int byteOffset(int position) {
+        return (int) ((long) position << shift) & SEGMENT_MASK;
+    }
+
+    @Override
+    public T get(int position) {
+        if (position < 0 || position >= size)
+            return getDefaultValue();
+        Object value;
+        switch (ti.type) {
+            case INT: value = Integer.valueOf(getAsInt(position)); break;
+            case LONG: value = Long.valueOf(getAsLong(position)); break;
+            case FLOAT: value = Float.valueOf(getAsFloat(position)); break;
+            default: value = Double.valueOf(getAsDouble(position)); break;
+        }
+        // The box matches ti.type, which is the element type T.
+        @SuppressWarnings("unchecked")
+        T result = (T) value;
+        return result;
+    }
+
+    @Override
+    public int getAsInt(int position) {
+        if (position < 0 || position >= size)
+            return 0;
+        ByteBuffer segment = segment(position);
+        int offset = byteOffset(position);
+        switch (ti.type) {
+            case INT: return segment.getInt(offset);
+            case LONG: return (int) segment.getLong(offset);
+            case FLOAT: return (int) segment.getFloat(offset);
+            default: return (int) segment.getDouble(offset);
+        }
+    }
+
+    @Override
+    public long getAsLong(int position) {
+        if (position < 0 || position >= size)
+            return 0;
+        ByteBuffer segment = segment(position);
+        int offset = byteOffset(position);
+        switch (ti.type) {
+            case INT: return segment.getInt(offset);
+            case LONG: return segment.getLong(offset);
+            case FLOAT: return (long) segment.getFloat(offset);
+            default: return (long) segment.getDouble(offset);
+        }
+    }
+
+    @Override
+    public float getAsFloat(int position) {
+        if (position < 0 || position >= size)
+            return 0;
+        ByteBuffer segment = segment(position);
+        int offset = byteOffset(position);
+        switch (ti.type) {
+            case INT: return segment.getInt(offset);
+            case LONG: return segment.getLong(offset);
+            case FLOAT: return segment.getFloat(offset);
+            default: return (float) segment.getDouble(offset);
+        }
+    }
+
+    @Override
+    public double getAsDouble(int position) {
+        if (position < 0 || position >= size)
+            return 0;
+        ByteBuffer segment = segment(position);
+        int offset = byteOffset(position);
+        switch (ti.type) {
+            case INT: return segment.getInt(offset);
+            case LONG: return segment.getLong(offset);
+            case FLOAT: return segment.getFloat(offset);
+            default: return segment.getDouble(offset);
+        }
+    }
+
+    @Override
+    public byte getAsByte(int position) {
+        return (byte) getAsInt(position);
+    }
+
+    @Override
+    public short getAsShort(int position) {
+        return (short) getAsInt(position);
+    }
+
+    /**
+     * Copy a run of elements that lies within one segment, returning the
+     * number copied.  Uses a bulk get when dest has the element type.
+     */
+    private int copyRun(int sourceOffset, int length, Object dest, int destOffset) {
+        ByteBuffer segment = segment(sourceOffset).duplicate();
+        segment.order(segments[0].order());
+        int offset = byteOffset(sourceOffset);
+        int run = Math.min(length, (segment.capacity() - offset) >> shift);
+        segment.position(offset);
+        if (dest instanceof double[] && ti.type == TypeInfo.Types.DOUBLE)
+            segment.asDoubleBuffer().get((double[]) dest, destOffset, run);
+        else if (dest instanceof float[] && ti.type == TypeInfo.Types.FLOAT)
+            segment.asFloatBuffer().get((float[]) dest, destOffset, run);
+        else if (dest instanceof int[] && ti.type == TypeInfo.Types.INT)
+            segment.asIntBuffer().get((int[]) dest, destOffset, run);
+        else if (dest instanceof long[] && ti.type == TypeInfo.Types.LONG)
+            segment.asLongBuffer().get((long[]) dest, destOffset, run);
+        else if (dest instanceof double[]) {
+            double[] d = (double[]) dest;
+            for (int i = 0; i < run; i++)
+                d[destOffset + i] = getAsDouble(sourceOffset + i);
+        }
+        else if (dest instanceof float[]) {
+            float[] d = (float[]) dest;
+            for (int i = 0; i < run; i++)
+                d[destOffset + i] = getAsFloat(sourceOffset + i);
+        }
+        else if (dest instanceof int[]) {
+            int[] d = (int[]) dest;
+            for (int i = 0; i < run; i++)
+                d[destOffset + i] = getAsInt(sourceOffset + i);
+        }
+        else {
+            long[] d = (long[]) dest;
+            for (int i = 0; i < run; i++)
+                d[destOffset + i] = getAsLong(sourceOffset + i);
+        }
+        return run;
+    }
+
+    private void copy(int sourceOffset, int length, Object dest, int destOffset) {
+        if (sourceOffset < 0 || (length > 0 && sourceOffset + length > size))
+            throw new ArrayIndexOutOfBoundsException();
+        while (length > 0) {
+            int run = copyRun(sourceOffset, length, dest, destOffset);
+            sourceOffset += run;
+            destOffset += run;
+            length -= run;
+        }
+    }
+
+    @Override
+    public void toArray(int sourceOffset, int length, int[] dest, int destOffset) {
+        copy(sourceOffset, length, dest, destOffset);
+    }
+
+    @Override
+    public void toArray(int sourceOffset, int length, long[] dest, int destOffset) {
+        copy(sourceOffset, length, dest, destOffset);
+    }
+
+    @Override
+    public void toArray(int sourceOffset, int length, float[] dest, int destOffset) {
+        copy(sourceOffset, length, dest, destOffset);
+    }
+
+    @Override
+    public void toArray(int sourceOffset, int length, double[] dest, int destOffset) {
+        copy(sourceOffset, length, dest, destOffset);
+    }
+}
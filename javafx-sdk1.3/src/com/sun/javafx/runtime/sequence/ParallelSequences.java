@@ -0,0 +1,637 @@
+/*
+ * Copyright 2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.javafx.runtime.sequence;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.sun.javafx.functions.Function1;
+import com.sun.javafx.runtime.TypeInfo;
+import com.sun.javafx.runtime.Util;
+
+/**
+ * Parallel versions of bulk operations on large sequences: mapping to
+ * double, reduction (sum, min, max), filtering, sorting and searching.
+ *
+ * A sequence of at least {@code javafx.sequence.parallelThreshold} elements
+ * (default 100000; 0 disables) is split into parts, a few per processor,
+ * which are processed on a pool of daemon worker threads while the calling
+ * thread waits; the results of the parts are then combined in order.
+ * Smaller sequences, and calls made from a worker thread, are processed
+ * sequentially on the calling thread.  An ArraySequence is split at its
+ * gap, so that no part straddles it.
+ *
+ * The sequence must not be modified while an operation runs, and the
+ * functions and predicates passed in are called concurrently from several
+ * threads, so they must not modify shared state (in particular, FX
+ * functions must not assign to or read bound variables).
+ */
+public final class ParallelSequences {
+
+    static final int threshold = Math.max(0, Util.getIntProperty("javafx.sequence.parallelThreshold", 100000));
+
+    /** Smallest number of elements worth handing to a worker. */
+    private static final int MIN_PART = 16384;
+
+    private static final int nThreads = Runtime.getRuntime().availableProcessors();
+
+    private static ExecutorService pool;
+    private static boolean poolFailed;
+
+    private ParallelSequences() {
+    }
+
+    /** A function of an element, read with getAsDouble. */
+    public interface DoubleMapper {
+        public double map(double value);
+    }
+
+    /** An associative operation, used to combine elements. */
+    public interface DoubleReducer {
+        public double reduce(double left, double right);
+    }
+
+    private static final class Worker extends Thread {
+        Worker(Runnable r) {
+            super(r, "JavaFX sequence worker");
+        }
+    }
+
+    private static synchronized ExecutorService getPool() {
+        if (pool == null && !poolFailed) {
+            try {
+                pool = Executors.newFixedThreadPool(nThreads, new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Worker(r);
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+            } catch (SecurityException ignored) {
+                poolFailed = true;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * An operation split into parts: part p covers the elements from
+     * bounds[p] (inclusive) to bounds[p+1] (exclusive).
+     */
+    private static abstract class Job {
+        final int[] bounds;
+
+        Job(int[] bounds) {
+            this.bounds = bounds;
+        }
+
+        int parts() {
+            return bounds.length - 1;
+        }
+
+        abstract void compute(int part, int from, int to);
+    }
+
+    private static final class Part implements Runnable {
+        final Job job;
+        final int part;
+        final CountDownLatch done;
+        Throwable failure;
+
+        Part(Job job, int part, CountDownLatch done) {
+            this.job = job;
+            this.part = part;
+            this.done = done;
+        }
+
+        public void run() {
+            try {
+                job.compute(part, job.bounds[part], job.bounds[part + 1]);
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    /**
+     * Split the elements of seq into parts, or into a single part if it
+     * should be processed sequentially.
+     */
+    private static int[] split(Sequence<?> seq) {
+        int size = seq.size();
+        int parts = 1;
+        if (threshold > 0 && size >= threshold && nThreads > 1
+                && !(Thread.currentThread() instanceof Worker) && getPool() != null)
+            parts = Math.max(1, Math.min(4 * nThreads, size / MIN_PART));
+        int[] bounds = new int[parts + 1];
+        for (int p = 1; p <= parts; p++)
+            bounds[p] = (int) ((long) size * p / parts);
+        if (parts > 1 && seq instanceof ArraySequence) {
+            // Move the nearest boundary to the gap.
+            int gap = ((ArraySequence) seq).gapStart;
+            if (gap > 0 && gap < size) {
+                int p = (int) (((long) gap * parts + size / 2) / size);
+                p = Math.max(1, Math.min(parts - 1, p));
+                if (bounds[p - 1] < gap && gap < bounds[p + 1])
+                    bounds[p] = gap;
+            }
+        }
+        return bounds;
+    }
+
+    /** Run all parts of job, the first on the calling thread, and wait for them. */
+    private static void run(Job job) {
+        int parts = job.parts();
+        if (parts == 1) {
+            job.compute(0, job.bounds[0], job.bounds[1]);
+            return;
+        }
+        ExecutorService executor = getPool();
+        CountDownLatch done = new CountDownLatch(parts);
+        Part[] running = new Part[parts];
+        for (int p = 0; p < parts; p++)
+            running[p] = new Part(job, p, done);
+        int submitted = 1;
+        try {
+            for (; submitted < parts; submitted++)
+                executor.execute(running[submitted]);
+        } catch (RuntimeException re) {
+            // Rejected: run the remaining parts here.
+            for (; submitted < parts; submitted++)
+                running[submitted].run();
+        }
+        running[0].run();
+        awaitUninterruptibly(done);
+        for (int p = 0; p < parts; p++) {
+            Throwable failure = running[p].failure;
+            if (failure != null)
+                ParallelSequences.<RuntimeException>rethrow(failure);
+        }
+    }
+
+    /**
+     * Throw t unchanged, even if it is a checked exception: a function
+     * called on this thread would have thrown it as it is, since FX
+     * functions need not declare what they throw.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E extends Throwable> void rethrow(Throwable t) throws E {
+        throw (E) t;
+    }
+
+    /**
+     * Split the elements of seq as split does, but only at multiples of
+     * MIN_PART, so that each block of MIN_PART elements is in one part.
+     */
+    private static int[] splitAligned(Sequence<?> seq) {
+        int[] bounds = split(seq);
+        int parts = bounds.length - 1;
+        if (parts == 1)
+            return bounds;
+        int size = seq.size();
+        int[] aligned = new int[parts + 1];
+        int n = 0;
+        for (int p = 1; p < parts; p++) {
+            int bound = (int) Math.min(size, ((long) bounds[p] + MIN_PART / 2) / MIN_PART * MIN_PART);
+            if (bound > aligned[n])
+                aligned[++n] = bound;
+        }
+        if (size > aligned[n])
+            aligned[++n] = size;
+        return n == parts ? aligned : Arrays.copyOf(aligned, n + 1);
+    }
+
+    /**
+     * A job over the blocks of MIN_PART elements of a sequence, which
+     * computes a double for each block.  The block values are combined in
+     * order by the caller, so that the result is the same however the
+     * blocks were shared out, and whether or not they ran in parallel.
+     */
+    private static abstract class BlockJob extends Job {
+        final double[] blocks;
+
+        BlockJob(Sequence<?> seq) {
+            super(splitAligned(seq));
+            blocks = new double[(seq.size() + MIN_PART - 1) / MIN_PART];
+        }
+
+        abstract double block(int from, int to);
+
+        void compute(int part, int from, int to) {
+            for (int start = from; start < to; start += MIN_PART)
+                blocks[start / MIN_PART] = block(start, Math.min(to, start + MIN_PART));
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        for (;;) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException ie) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /** Apply mapper to each element of a numeric sequence, giving a Double sequence. */
+    public static Sequence<Double> mapToDouble(final Sequence<?> seq, final DoubleMapper mapper) {
+        final double[] result = new double[seq.size()];
+        run(new Job(split(seq)) {
+            void compute(int part, int from, int to) {
+                for (int i = from; i < to; i++)
+                    result[i] = mapper.map(seq.getAsDouble(i));
+            }
+        });
+        return new DoubleArraySequence(TypeInfo.Double, result, true);
+    }
+
+    /**
+     * Combine the elements of a numeric sequence with reducer, which must be
+     * associative; identity is the result for an empty sequence, and must be
+     * an identity of reducer, since each block of elements starts with it.
+     * The blocks are fixed, so a reducer that is only associative up to
+     * rounding still gives the same result on any number of threads.
+     */
+    public static double reduce(final Sequence<?> seq, final double identity, final DoubleReducer reducer) {
+        BlockJob job = new BlockJob(seq) {
+            double block(int from, int to) {
+                double value = identity;
+                for (int i = from; i < to; i++)
+                    value = reducer.reduce(value, seq.getAsDouble(i));
+                return value;
+            }
+        };
+        run(job);
+        double value = identity;
+        for (double v : job.blocks)
+            value = reducer.reduce(value, v);
+        return value;
+    }
+
+    /**
+     * The sum of the elements of a numeric sequence.  The elements are
+     * summed in blocks of a fixed size, and the block sums are then added in
+     * order, so the result does not depend on the number of threads used;
+     * it may differ in the last bits from a plain left-to-right sum.
+     */
+    public static double sum(final Sequence<?> seq) {
+        BlockJob job = new BlockJob(seq) {
+            double block(int from, int to) {
+                double sum = 0;
+                for (int i = from; i < to; i++)
+                    sum += seq.getAsDouble(i);
+                return sum;
+            }
+        };
+        run(job);
+        double sum = 0;
+        for (double s : job.blocks)
+            sum += s;
+        return sum;
+    }
+
+    /** The smallest element of a numeric sequence, as a double.  NaN if any element is NaN. */
+    public static double min(Sequence<?> seq) {
+        return extreme(seq, false);
+    }
+
+    /** The largest element of a numeric sequence, as a double.  NaN if any element is NaN. */
+    public static double max(Sequence<?> seq) {
+        return extreme(seq, true);
+    }
+
+    private static double extreme(final Sequence<?> seq, final boolean max) {
+        if (seq == null || seq.isEmpty())
+            throw new IllegalArgumentException("empty sequence passed to ParallelSequences." + (max ? "max" : "min"));
+        final int[] bounds = split(seq);
+        final double[] partial = new double[bounds.length - 1];
+        run(new Job(bounds) {
+            void compute(int part, int from, int to) {
+                double value = seq.getAsDouble(from);
+                for (int i = from + 1; i < to; i++)
+                    value = max ? Math.max(value, seq.getAsDouble(i)) : Math.min(value, seq.getAsDouble(i));
+                partial[part] = value;
+            }
+        });
+        double value = partial[0];
+        for (int p = 1; p < partial.length; p++)
+            value = max ? Math.max(value, partial[p]) : Math.min(value, partial[p]);
+        return value;
+    }
+
+    /**
+     * Select the elements matching a predicate, computed for each part into
+     * its own BitSet (relative to the start of the part).
+     */
+    private static abstract class FilterJob extends Job {
+        final BitSet[] selected;
+
+        FilterJob(int[] bounds) {
+            super(bounds);
+            selected = new BitSet[parts()];
+        }
+
+        abstract boolean matches(int index);
+
+        void compute(int part, int from, int to) {
+            BitSet bits = new BitSet(to - from);
+            for (int i = from; i < to; i++)
+                if (matches(i))
+                    bits.set(i - from);
+            selected[part] = bits;
+        }
+
+        <T> Sequence<T> filter(Sequence<T> seq) {
+            run(this);
+            BitSet bits;
+            if (parts() == 1)
+                bits = selected[0];
+            else {
+                bits = new BitSet(seq.size());
+                for (int p = 0; p < parts(); p++) {
+                    BitSet part = selected[p];
+                    for (int i = part.nextSetBit(0); i >= 0; i = part.nextSetBit(i + 1))
+                        bits.set(bounds[p] + i);
+                }
+            }
+            return Sequences.filter(seq, bits);
+        }
+    }
+
+    /** The elements of seq which match predicate, in the same order. */
+    public static<T> Sequence<T> filter(final Sequence<T> seq, final SequencePredicate<? super T> predicate) {
+        return new FilterJob(split(seq)) {
+            boolean matches(int index) {
+                return predicate.matches(seq, index, seq.get(index));
+            }
+        }.filter(seq);
+    }
+
+    /** The elements of seq for which predicate returns true, in the same order.  For FX function values. */
+    public static<T> Sequence<T> filter(final Sequence<T> seq, final Function1<? extends Boolean, ? super T> predicate) {
+        return new FilterJob(split(seq)) {
+            boolean matches(int index) {
+                Boolean result = predicate.invoke(seq.get(index));
+                return result != null && result.booleanValue();
+            }
+        }.filter(seq);
+    }
+
+    public static Sequence<Integer> filter(final Sequence<Integer> seq, final IntSequencePredicate predicate) {
+        return new FilterJob(split(seq)) {
+            boolean matches(int index) {
+                return predicate.matches(seq, index, seq.getAsInt(index));
+            }
+        }.filter(seq);
+    }
+
+    public static Sequence<Long> filter(final Sequence<Long> seq, final LongSequencePredicate predicate) {
+        return new FilterJob(split(seq)) {
+            boolean matches(int index) {
+                return predicate.matches(seq, index, seq.getAsLong(index));
+            }
+        }.filter(seq);
+    }
+
+    public static Sequence<Float> filter(final Sequence<Float> seq, final FloatSequencePredicate predicate) {
+        return new FilterJob(split(seq)) {
+            boolean matches(int index) {
+                return predicate.matches(seq, index, seq.getAsFloat(index));
+            }
+        }.filter(seq);
+    }
+
+    public static Sequence<Double> filter(final Sequence<Double> seq, final DoubleSequencePredicate predicate) {
+        return new FilterJob(split(seq)) {
+            boolean matches(int index) {
+                return predicate.matches(seq, index, seq.getAsDouble(index));
+            }
+        }.filter(seq);
+    }
+
+    /**
+     * The index of the first element of seq equal to key, or -1.
+     * Parts after one that has found the key stop early.
+     */
+    public static<T> int indexOf(final Sequence<? extends T> seq, final T key) {
+        if (seq == null)
+            return -1;
+        if (key == null)
+            throw new NullPointerException();
+        final TypeInfo.Types type = seq.getElementType().type;
+        final int[] bounds = split(seq);
+        final int[] found = new int[bounds.length - 1];
+        run(new Job(bounds) {
+            /** Smallest index found so far, by any part. */
+            volatile int limit = Integer.MAX_VALUE;
+
+            void compute(int part, int from, int to) {
+                found[part] = -1;
+                for (int i = from; i < to; i++) {
+                    if ((i & 1023) == 0 && i > limit)
+                        return;
+                    if (matches(i)) {
+                        found[part] = i;
+                        synchronized (this) {
+                            if (i < limit)
+                                limit = i;
+                        }
+                        return;
+                    }
+                }
+            }
+
+            boolean matches(int i) {
+                switch (type) {
+                    case INT:
+                        if (key instanceof Integer)
+                            return seq.getAsInt(i) == ((Integer) key).intValue();
+                        break;
+                    case LONG:
+                        if (key instanceof Long)
+                            return seq.getAsLong(i) == ((Long) key).longValue();
+                        break;
+                    case FLOAT:
+                        // Same as Float.equals.
+                        if (key instanceof Float)
+                            return Float.floatToIntBits(seq.getAsFloat(i)) == Float.floatToIntBits(((Float) key).floatValue());
+                        break;
+                    case DOUBLE:
+                        if (key instanceof Double)
+                            return Double.doubleToLongBits(seq.getAsDouble(i)) == Double.doubleToLongBits(((Double) key).doubleValue());
+                        break;
+                }
+                return key.equals(seq.get(i));
+            }
+        });
+        for (int index : found)
+            if (index >= 0)
+                return index;
+        return -1;
+    }
+
+    /**
+     * Sort a sequence in the natural order of its elements, with the same
+     * result as Sequences.sort.  Each part is copied out and sorted in
+     * parallel, then adjacent runs are merged in parallel, halving the
+     * number of runs each round.  Integer, Long, Float, Double and
+     * Comparable object elements are sorted in parallel; other element
+     * types use Sequences.sort.
+     */
+    public static<T extends Comparable<? super T>> Sequence<? extends T> sort(final Sequence<T> seq) {
+        TypeInfo<T> ti = seq.getElementType();
+        int[] bounds = split(seq);
+        if (bounds.length <= 2)
+            return Sequences.sort(seq);
+        final int length = seq.size();
+        final Object array;
+        switch (ti.type) {
+            case INT: array = new int[length]; break;
+            case LONG: array = new long[length]; break;
+            case FLOAT: array = new float[length]; break;
+            case DOUBLE: array = new double[length]; break;
+            case OBJECT: case OTHER: array = Util.<T>newComparableArray(length); break;
+            default:
+                return Sequences.sort(seq);
+        }
+        run(new Job(bounds) {
+            void compute(int part, int from, int to) {
+                if (array instanceof int[]) {
+                    seq.toArray(from, to - from, (int[]) array, from);
+                    Arrays.sort((int[]) array, from, to);
+                } else if (array instanceof long[]) {
+                    seq.toArray(from, to - from, (long[]) array, from);
+                    Arrays.sort((long[]) array, from, to);
+                } else if (array instanceof float[]) {
+                    seq.toArray(from, to - from, (float[]) array, from);
+                    Arrays.sort((float[]) array, from, to);
+                } else if (array instanceof double[]) {
+                    seq.toArray(from, to - from, (double[]) array, from);
+                    Arrays.sort((double[]) array, from, to);
+                } else {
+                    seq.toArray(from, to - from, (Object[]) array, from);
+                    Arrays.sort((Object[]) array, from, to);
+                }
+            }
+        });
+        Object src = array;
+        Object dst = newArrayLike(array, length);
+        while (bounds.length > 2) {
+            // Merge runs 2k and 2k+1; an odd last run is copied.
+            int runs = bounds.length - 1;
+            int merged = (runs + 1) / 2;
+            final int[] mids = new int[merged];
+            int[] next = new int[merged + 1];
+            for (int k = 0; k < merged; k++) {
+                next[k] = bounds[2 * k];
+                mids[k] = bounds[Math.min(2 * k + 1, runs)];
+            }
+            next[merged] = length;
+            final Object from = src, to = dst;
+            run(new Job(next) {
+                void compute(int part, int lo, int hi) {
+                    merge(from, to, lo, mids[part], hi);
+                }
+            });
+            bounds = next;
+            src = dst;
+            dst = from;
+        }
+        return makeViaHandoff(ti, src);
+    }
+
+    /** Make a sequence of type ti that takes over array, which holds its elements. */
+    @SuppressWarnings("unchecked")
+    private static<T> Sequence<T> makeViaHandoff(TypeInfo<T> ti, Object array) {
+        switch (ti.type) {
+            case INT: return (Sequence<T>) new IntArraySequence((TypeInfo<Integer>) ti, (int[]) array, true);
+            case LONG: return (Sequence<T>) new LongArraySequence((TypeInfo<Long>) ti, (long[]) array, true);
+            case FLOAT: return (Sequence<T>) new FloatArraySequence((TypeInfo<Float>) ti, (float[]) array, true);
+            case DOUBLE: return (Sequence<T>) new DoubleArraySequence((TypeInfo<Double>) ti, (double[]) array, true);
+            default: return Sequences.makeViaHandoff(ti, (T[]) array);
+        }
+    }
+
+    private static Object newArrayLike(Object array, int length) {
+        if (array instanceof int[])
+            return new int[length];
+        if (array instanceof long[])
+            return new long[length];
+        if (array instanceof float[])
+            return new float[length];
+        if (array instanceof double[])
+            return new double[length];
+        return new Comparable<?>[length];
+    }
+
+    /**
+     * Merge the sorted runs src[from..mid) and src[mid..to) into dst[from..to).
+     * Ties are taken from the first run, so the merge is stable; floats and
+     * doubles are compared as by Arrays.sort.
+     */
+    private static void merge(Object src, Object dst, int from, int mid, int to) {
+        int i = from, j = mid, k = from;
+        if (src instanceof int[]) {
+            int[] a = (int[]) src, b = (int[]) dst;
+            while (i < mid && j < to)
+                b[k++] = a[j] < a[i] ? a[j++] : a[i++];
+        } else if (src instanceof long[]) {
+            long[] a = (long[]) src, b = (long[]) dst;
+            while (i < mid && j < to)
+                b[k++] = a[j] < a[i] ? a[j++] : a[i++];
+        } else if (src instanceof float[]) {
+            float[] a = (float[]) src, b = (float[]) dst;
+            while (i < mid && j < to)
+                b[k++] = Float.compare(a[j], a[i]) < 0 ? a[j++] : a[i++];
+        } else if (src instanceof double[]) {
+            double[] a = (double[]) src, b = (double[]) dst;
+            while (i < mid && j < to)
+                b[k++] = Double.compare(a[j], a[i]) < 0 ? a[j++] : a[i++];
+        } else {
+            Object[] a = (Object[]) src, b = (Object[]) dst;
+            while (i < mid && j < to)
+                b[k++] = compare(a[j], a[i]) < 0 ? a[j++] : a[i++];
+        }
+        System.arraycopy(src, i, dst, k, mid - i);
+        System.arraycopy(src, j, dst, k + (mid - i), to - j);
+    }
+
+    /** Compare two elements of a sequence sorted in their natural order. */
+    @SuppressWarnings("unchecked")
+    private static int compare(Object a, Object b) {
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+}
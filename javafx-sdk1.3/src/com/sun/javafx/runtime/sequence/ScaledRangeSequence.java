@@ -0,0 +1,78 @@
+/*
+ * Copyright 2008-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.javafx.runtime.sequence;
+
+import com.sun.javafx.runtime.TypeInfo;
+
+/**
+ * The Number sequence of {@code x * scale + offset} for each x in an integer range, such as the value of
+ * {@code for (i in [0..n]) i * 0.5 + 1}.  Each element is computed as the for-expression would compute it, by
+ * converting x to a float, multiplying and then adding, so the values are the same.  An offset of -0.0, which
+ * leaves every float unchanged, stands for no offset.  Views should be created with the Sequences.affine()
+ * factory method.  O(1) space and time construction costs.
+ */
+class ScaledRangeSequence extends AbstractSequence<Float> implements Sequence<Float> {
+
+    private final IntRangeSequence range;
+    private final float scale, offset;
+
+    ScaledRangeSequence(IntRangeSequence range, float scale, float offset) {
+        super(TypeInfo.Float);
+        this.range = range;
+        this.scale = scale;
+        this.offset = offset;
+    }
+
+    /** The slice of size elements starting at position start and stepping by step, as for SubSequence.make. */
+    ScaledRangeSequence slice(int size, int start, int step) {
+        return new ScaledRangeSequence(range.slice(size, start, step), scale, offset);
+    }
+
+    @Override
+    public int size() {
+        return range.size();
+    }
+
+    @Override
+    public Float get(int position) {
+        return getAsFloat(position);
+    }
+
+    @Override
+    public float getAsFloat(int position) {
+        if (position < 0 || position >= range.size())
+            return 0.0f;
+        else
+            return (float) range.getAsInt(position) * scale + offset;
+    }
+
+    @Override
+    public void toArray(int sourceOffset, int length, Object[] dest, int destOffset) {
+        if (sourceOffset < 0 || (length > 0 && sourceOffset + length > size()))
+            throw new ArrayIndexOutOfBoundsException();
+
+        for (int i = 0; i < length; i++)
+            dest[destOffset + i] = (float) range.getAsInt(sourceOffset + i) * scale + offset;
+    }
+}
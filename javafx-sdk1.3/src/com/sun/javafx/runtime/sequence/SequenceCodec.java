@@ -0,0 +1,713 @@
+/*
+ * Copyright 2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.javafx.runtime.sequence;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import com.sun.javafx.runtime.FXObject;
+import com.sun.javafx.runtime.TypeInfo;
+
+/**
+ * Binary encoding of sequences, and of the values they hold.
+ *
+ * A sequence is written as its element kind, its size and its elements.
+ * The elements of a primitive sequence are copied as one block, straight
+ * from the array of an array sequence (the parts before and after the gap),
+ * and through a small buffer from any other sequence, so there is no
+ * boxing either way; decoding reads into the array of the new sequence.
+ * Other values are written with a tag byte: null, boxed primitives,
+ * strings and sequences are understood here, and a subclass can add more
+ * (see {@code com.sun.javafx.runtime.FXObjectCodec}) by overriding
+ * {@link #writeOther} and {@link #readOther}.
+ *
+ * Data goes through an {@link Output} or {@link Input}, which either
+ * hold it all in a {@code ByteBuffer} or stream it through a buffer to or
+ * from a channel, such as a {@code FileChannel}.  The stream starts with a
+ * header giving the byte order, which is the native one when writing.
+ */
+public class SequenceCodec {
+    // Value tags.  The primitive tags and STRING are also element kinds.
+    protected static final byte NULL = 0;
+    protected static final byte BOOLEAN = 1;
+    protected static final byte CHAR = 2;
+    protected static final byte BYTE = 3;
+    protected static final byte SHORT = 4;
+    protected static final byte INT = 5;
+    protected static final byte LONG = 6;
+    protected static final byte FLOAT = 7;
+    protected static final byte DOUBLE = 8;
+    protected static final byte STRING = 9;
+    protected static final byte SEQUENCE = 10;
+
+    // Element kinds of sequences of other values
+    private static final byte KIND_OBJECT = 11;
+    private static final byte KIND_OTHER = 12;
+
+    /** The first tag free for subclasses. */
+    protected static final byte FIRST_OTHER_TAG = 16;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int MIN_BUFFER_SIZE = 64;
+    private static final int CHUNK = 4096;
+    private static final byte[] NO_BYTES = new byte[0];
+
+    /** Where encoded data is written. */
+    public static final class Output {
+        private ByteBuffer buf;
+        private final WritableByteChannel channel;
+
+        /** Write to a heap buffer, which grows as needed. */
+        public Output() {
+            this(null, ByteBuffer.allocate(8192));
+        }
+
+        /** Write to the channel, through a buffer of the given size. */
+        public Output(WritableByteChannel channel, int bufferSize) {
+            this(channel, ByteBuffer.allocateDirect(Math.max(bufferSize, MIN_BUFFER_SIZE)));
+        }
+
+        private Output(WritableByteChannel channel, ByteBuffer buf) {
+            this.channel = channel;
+            this.buf = buf;
+            buf.order(ByteOrder.nativeOrder());
+            buf.put((byte) 'F').put((byte) 'X').put((byte) 'B');
+            buf.put((byte) (buf.order() == ByteOrder.BIG_ENDIAN ? 'B' : 'L'));
+        }
+
+        /** Write out anything buffered to the channel, if there is one. */
+        public void flush() throws IOException {
+            if (channel != null)
+                drain();
+        }
+
+        /**
+         * The data written so far, from the header on, if there is no
+         * channel.  The result has the byte order of the data.
+         */
+        public ByteBuffer toByteBuffer() {
+            ByteBuffer result = buf.duplicate();
+            result.flip();
+            return result.order(buf.order());
+        }
+
+        private void drain() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining())
+                channel.write(buf);
+            buf.clear();
+        }
+
+        private void ensure(int n) throws IOException {
+            if (buf.remaining() >= n)
+                return;
+            if (channel != null) {
+                drain();
+                if (buf.remaining() >= n)
+                    return;
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(2 * buf.capacity(), buf.position() + n));
+            bigger.order(buf.order());
+            buf.flip();
+            bigger.put(buf);
+            buf = bigger;
+        }
+
+        /**
+         * Make room for some of n elements of elemSize bytes, and return
+         * how many.  Without a channel, that is all of them.
+         */
+        private int room(int elemSize, int n) throws IOException {
+            if (channel == null) {
+                ensure(n * elemSize);
+                return n;
+            }
+            ensure(elemSize);
+            return Math.min(n, buf.remaining() / elemSize);
+        }
+
+        public void writeByte(int v) throws IOException {
+            ensure(1);
+            buf.put((byte) v);
+        }
+
+        public void writeBoolean(boolean v) throws IOException {
+            writeByte(v ? 1 : 0);
+        }
+
+        public void writeChar(char v) throws IOException {
+            ensure(2);
+            buf.putChar(v);
+        }
+
+        public void writeShort(short v) throws IOException {
+            ensure(2);
+            buf.putShort(v);
+        }
+
+        public void writeInt(int v) throws IOException {
+            ensure(4);
+            buf.putInt(v);
+        }
+
+        public void writeLong(long v) throws IOException {
+            ensure(8);
+            buf.putLong(v);
+        }
+
+        public void writeFloat(float v) throws IOException {
+            ensure(4);
+            buf.putFloat(v);
+        }
+
+        public void writeDouble(double v) throws IOException {
+            ensure(8);
+            buf.putDouble(v);
+        }
+
+        public void writeString(String v) throws IOException {
+            byte[] bytes = v.getBytes(UTF8);
+            writeInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        public void write(boolean[] a, int off, int n) throws IOException {
+            writeArray(a, off, n);
+        }
+
+        public void write(byte[] a, int off, int n) throws IOException {
+            writeArray(a, off, n);
+        }
+
+        public void write(char[] a, int off, int n) throws IOException {
+            writeArray(a, off, n);
+        }
+
+        public void write(short[] a, int off, int n) throws IOException {
+            writeArray(a, off, n);
+        }
+
+        public void write(int[] a, int off, int n) throws IOException {
+            writeArray(a, off, n);
+        }
+
+        public void write(long[] a, int off, int n) throws IOException {
+            writeArray(a, off, n);
+        }
+
+        public void write(float[] a, int off, int n) throws IOException {
+            writeArray(a, off, n);
+        }
+
+        public void write(double[] a, int off, int n) throws IOException {
+            writeArray(a, off, n);
+        }
+
+        /** Write n elements of the primitive array a, from off on. */
+        void writeArray(Object a, int off, int n) throws IOException {
+            int elemSize = elementSize(a);
+            while (n > 0) {
+                int k = room(elemSize, n);
+                put(a, off, k);
+                off += k;
+                n -= k;
+            }
+        }
+
+        /** Copy k elements, which fit, into the buffer. */
+        private void put(Object a, int off, int k) {
+            if (a instanceof byte[]) {
+                buf.put((byte[]) a, off, k);
+                return;
+            }
+            if (a instanceof boolean[]) {
+                boolean[] b = (boolean[]) a;
+                for (int i = 0; i < k; i++)
+                    buf.put((byte) (b[off + i] ? 1 : 0));
+                return;
+            }
+            if (a instanceof int[])
+                buf.asIntBuffer().put((int[]) a, off, k);
+            else if (a instanceof float[])
+                buf.asFloatBuffer().put((float[]) a, off, k);
+            else if (a instanceof double[])
+                buf.asDoubleBuffer().put((double[]) a, off, k);
+            else if (a instanceof long[])
+                buf.asLongBuffer().put((long[]) a, off, k);
+            else if (a instanceof short[])
+                buf.asShortBuffer().put((short[]) a, off, k);
+            else
+                buf.asCharBuffer().put((char[]) a, off, k);
+            buf.position(buf.position() + elementSize(a) * k);
+        }
+    }
+
+    /** Where encoded data is read from. */
+    public static final class Input {
+        private final ByteBuffer buf;
+        private final ReadableByteChannel channel;
+
+        /**
+         * Read from the buffer, starting at its position.  The position of
+         * the buffer itself is not changed.
+         */
+        public Input(ByteBuffer buf) throws IOException {
+            this(null, buf.duplicate());
+        }
+
+        /** Read from the channel, through a buffer of the given size. */
+        public Input(ReadableByteChannel channel, int bufferSize) throws IOException {
+            this(channel, emptyBuffer(bufferSize));
+        }
+
+        private static ByteBuffer emptyBuffer(int bufferSize) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(Math.max(bufferSize, MIN_BUFFER_SIZE));
+            buf.limit(0);
+            return buf;
+        }
+
+        private Input(ReadableByteChannel channel, ByteBuffer buf) throws IOException {
+            this.channel = channel;
+            this.buf = buf;
+            need(4);
+            if (buf.get() != 'F' || buf.get() != 'X' || buf.get() != 'B')
+                throw new IOException("not an encoded FX value");
+            byte order = buf.get();
+            if (order != 'B' && order != 'L')
+                throw new IOException("bad byte order " + order);
+            buf.order(order == 'B' ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private void need(int n) throws IOException {
+            if (buf.remaining() >= n)
+                return;
+            if (channel == null)
+                throw new EOFException();
+            buf.compact();
+            while (buf.position() < n) {
+                if (channel.read(buf) < 0) {
+                    buf.flip();
+                    throw new EOFException();
+                }
+            }
+            buf.flip();
+        }
+
+        /** Read in some of n elements of elemSize bytes, and return how many. */
+        private int room(int elemSize, int n) throws IOException {
+            need(elemSize);
+            return Math.min(n, buf.remaining() / elemSize);
+        }
+
+        public byte readByte() throws IOException {
+            need(1);
+            return buf.get();
+        }
+
+        public boolean readBoolean() throws IOException {
+            return readByte() != 0;
+        }
+
+        public char readChar() throws IOException {
+            need(2);
+            return buf.getChar();
+        }
+
+        public short readShort() throws IOException {
+            need(2);
+            return buf.getShort();
+        }
+
+        public int readInt() throws IOException {
+            need(4);
+            return buf.getInt();
+        }
+
+        public long readLong() throws IOException {
+            need(8);
+            return buf.getLong();
+        }
+
+        public float readFloat() throws IOException {
+            need(4);
+            return buf.getFloat();
+        }
+
+        public double readDouble() throws IOException {
+            need(8);
+            return buf.getDouble();
+        }
+
+        public String readString() throws IOException {
+            byte[] bytes = (byte[]) readNewArray(NO_BYTES, readLength());
+            return new String(bytes, UTF8);
+        }
+
+        /** Read a size, which must not be negative. */
+        public int readLength() throws IOException {
+            int n = readInt();
+            if (n < 0)
+                throw new IOException("bad length " + n);
+            return n;
+        }
+
+        public void read(boolean[] a, int off, int n) throws IOException {
+            readArray(a, off, n);
+        }
+
+        public void read(byte[] a, int off, int n) throws IOException {
+            readArray(a, off, n);
+        }
+
+        public void read(char[] a, int off, int n) throws IOException {
+            readArray(a, off, n);
+        }
+
+        public void read(short[] a, int off, int n) throws IOException {
+            readArray(a, off, n);
+        }
+
+        public void read(int[] a, int off, int n) throws IOException {
+            readArray(a, off, n);
+        }
+
+        public void read(long[] a, int off, int n) throws IOException {
+            readArray(a, off, n);
+        }
+
+        public void read(float[] a, int off, int n) throws IOException {
+            readArray(a, off, n);
+        }
+
+        public void read(double[] a, int off, int n) throws IOException {
+            readArray(a, off, n);
+        }
+
+        /**
+         * Read n elements into a new primitive array of the same kind as
+         * like.  The array grows as the elements arrive if the size of the
+         * input is not known.
+         */
+        Object readNewArray(Object like, int n) throws IOException {
+            Class<?> type = like.getClass().getComponentType();
+            Object a = Array.newInstance(type, capacity(n, elementSize(like)));
+            int done = 0;
+            while (done < n) {
+                int length = Array.getLength(a);
+                if (done == length) {
+                    Object grown = Array.newInstance(type, (int) Math.min(n, 2L * length));
+                    System.arraycopy(a, 0, grown, 0, done);
+                    a = grown;
+                    length = Array.getLength(a);
+                }
+                readArray(a, done, length - done);
+                done = length;
+            }
+            return a;
+        }
+
+        /**
+         * How many of n elements, each taking at least elemSize bytes, to
+         * make room for before reading them.  If the size of the input is
+         * known, n is checked against what is left of it, so that a bad
+         * length is reported rather than allocated; otherwise room is made
+         * for at most a chunk at a time.
+         */
+        int capacity(int n, int elemSize) throws IOException {
+            long left = buf.remaining();
+            if (channel instanceof FileChannel) {
+                FileChannel file = (FileChannel) channel;
+                left += file.size() - file.position();
+            } else if (channel != null) {
+                return Math.min(n, CHUNK);
+            }
+            if ((long) n * elemSize > left)
+                throw new IOException("bad length " + n + ", with " + left + " bytes left");
+            return n;
+        }
+
+        /** Read n elements into the primitive array a, from off on. */
+        void readArray(Object a, int off, int n) throws IOException {
+            int elemSize = elementSize(a);
+            while (n > 0) {
+                int k = room(elemSize, n);
+                get(a, off, k);
+                off += k;
+                n -= k;
+            }
+        }
+
+        /** Copy k elements, which have been read in, out of the buffer. */
+        private void get(Object a, int off, int k) {
+            if (a instanceof byte[]) {
+                buf.get((byte[]) a, off, k);
+                return;
+            }
+            if (a instanceof boolean[]) {
+                boolean[] b = (boolean[]) a;
+                for (int i = 0; i < k; i++)
+                    b[off + i] = buf.get() != 0;
+                return;
+            }
+            if (a instanceof int[])
+                buf.asIntBuffer().get((int[]) a, off, k);
+            else if (a instanceof float[])
+                buf.asFloatBuffer().get((float[]) a, off, k);
+            else if (a instanceof double[])
+                buf.asDoubleBuffer().get((double[]) a, off, k);
+            else if (a instanceof long[])
+                buf.asLongBuffer().get((long[]) a, off, k);
+            else if (a instanceof short[])
+                buf.asShortBuffer().get((short[]) a, off, k);
+            else
+                buf.asCharBuffer().get((char[]) a, off, k);
+            buf.position(buf.position() + elementSize(a) * k);
+        }
+    }
+
+    /** The size in bytes of an element of a primitive array. */
+    private static int elementSize(Object a) {
+        if (a instanceof int[] || a instanceof float[])
+            return 4;
+        if (a instanceof double[] || a instanceof long[])
+            return 8;
+        if (a instanceof short[] || a instanceof char[])
+            return 2;
+        return 1;
+    }
+
+    /** Write a value, with its tag. */
+    public void writeValue(Output out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Sequence) {
+            out.writeByte(SEQUENCE);
+            writeSequence(out, (Sequence<?>) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt(((Integer) value).intValue());
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat(((Float) value).floatValue());
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(((Boolean) value).booleanValue());
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Double) value).doubleValue());
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong(((Long) value).longValue());
+        } else if (value instanceof Character) {
+            out.writeByte(CHAR);
+            out.writeChar(((Character) value).charValue());
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte(((Byte) value).byteValue());
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort(((Short) value).shortValue());
+        } else {
+            writeOther(out, value);
+        }
+    }
+
+    /** Write a value of a type not known here, with its tag. */
+    protected void writeOther(Output out, Object value) throws IOException {
+        throw new IllegalArgumentException("cannot encode a " + value.getClass().getName());
+    }
+
+    /** Whether writeValue can write the value, not counting the elements of a sequence. */
+    protected boolean canWrite(Object value) {
+        return value == null || value instanceof Sequence || value instanceof String
+                || value instanceof Number || value instanceof Boolean || value instanceof Character;
+    }
+
+    /** Read a value written by writeValue. */
+    public Object readValue(Input in) throws IOException {
+        return readValue(in, in.readByte());
+    }
+
+    /** Read a value written by writeValue, whose tag has been read. */
+    protected Object readValue(Input in, int tag) throws IOException {
+        switch (tag) {
+            case NULL:     return null;
+            case BOOLEAN:  return Boolean.valueOf(in.readBoolean());
+            case CHAR:     return Character.valueOf(in.readChar());
+            case BYTE:     return Byte.valueOf(in.readByte());
+            case SHORT:    return Short.valueOf(in.readShort());
+            case INT:      return Integer.valueOf(in.readInt());
+            case LONG:     return Long.valueOf(in.readLong());
+            case FLOAT:    return Float.valueOf(in.readFloat());
+            case DOUBLE:   return Double.valueOf(in.readDouble());
+            case STRING:   return in.readString();
+            case SEQUENCE: return readSequence(in);
+            default:       return readOther(in, tag);
+        }
+    }
+
+    /** Read a value of a type not known here, whose tag has been read. */
+    protected Object readOther(Input in, int tag) throws IOException {
+        throw new IOException("bad value tag " + tag);
+    }
+
+    /** Write a sequence, without a tag. */
+    public void writeSequence(Output out, Sequence<?> seq) throws IOException {
+        TypeInfo<?> ti = seq.getElementType();
+        int size = seq.size();
+        int kind = primitiveKind(ti);
+        if (kind != NULL) {
+            out.writeByte(kind);
+            out.writeInt(size);
+            ArraySequence<?> empty = PRIMITIVE_TYPES[kind].emptySequence;
+            if (seq instanceof ArraySequence
+                    && ((ArraySequence<?>) seq).getRawArray().getClass() == empty.getRawArray().getClass()) {
+                ArraySequence<?> arr = (ArraySequence<?>) seq;
+                Object array = arr.getRawArray();
+                out.writeArray(array, 0, arr.gapStart);
+                out.writeArray(array, arr.gapEnd, arr.getRawArrayLength() - arr.gapEnd);
+            } else {
+                Object chunk = empty.newRawArray(Math.min(size, CHUNK));
+                for (int i = 0; i < size; i += CHUNK) {
+                    int n = Math.min(CHUNK, size - i);
+                    Sequences.toArray(seq, i, n, chunk, 0);
+                    out.writeArray(chunk, 0, n);
+                }
+            }
+            return;
+        }
+        if (ti == TypeInfo.String) {
+            out.writeByte(STRING);
+        } else if (ti == TypeInfo.Object || ti.defaultValue == null) {
+            out.writeByte(KIND_OBJECT);
+        } else {
+            // Such as Duration: the type info is found again from the
+            // class of the default value.
+            out.writeByte(KIND_OTHER);
+            out.writeString(ti.defaultValue.getClass().getName());
+        }
+        out.writeInt(size);
+        for (int i = 0; i < size; i++)
+            writeValue(out, seq.get(i));
+    }
+
+    /** The type info of each primitive element kind, indexed by its tag. */
+    private static final TypeInfo<?>[] PRIMITIVE_TYPES = {
+        null, TypeInfo.Boolean, TypeInfo.Character, TypeInfo.Byte, TypeInfo.Short,
+        TypeInfo.Integer, TypeInfo.Long, TypeInfo.Float, TypeInfo.Double
+    };
+
+    /** The tag of the primitive element kind of ti, or NULL if it is not primitive. */
+    private static int primitiveKind(TypeInfo<?> ti) {
+        for (int kind = BOOLEAN; kind <= DOUBLE; kind++) {
+            if (PRIMITIVE_TYPES[kind].type == ti.type)
+                return kind;
+        }
+        return NULL;
+    }
+
+    /** Read a sequence written by writeSequence. */
+    public Sequence<?> readSequence(Input in) throws IOException {
+        int kind = in.readByte();
+        if (kind >= BOOLEAN && kind <= DOUBLE) {
+            ArraySequence<?> empty = PRIMITIVE_TYPES[kind].emptySequence;
+            int size = in.readLength();
+            if (size == 0)
+                return empty;
+            // Read straight into the array of a new sequence, which has no gap.
+            ArraySequence<?> arr = empty.makeNew(0);
+            arr.setRawArray(in.readNewArray(empty.getRawArray(), size));
+            arr.gapStart = arr.gapEnd = size;
+            return arr;
+        }
+        switch (kind) {
+            case STRING:
+                return readObjects(in, TypeInfo.String);
+            case KIND_OBJECT:
+                return readObjects(in, TypeInfo.Object);
+            case KIND_OTHER:
+                // The class of the default value of a registered type info,
+                // which is an FX class such as Duration.
+                return readObjects(in, TypeInfo.getTypeInfo(loadClass(in.readString(), FXObject.class)));
+            default:
+                throw new IOException("bad sequence kind " + kind);
+        }
+    }
+
+    /** Read the size and the elements of a sequence of values written by writeValue. */
+    @SuppressWarnings("unchecked")
+    private <T> Sequence<T> readObjects(Input in, TypeInfo<T> ti) throws IOException {
+        int size = in.readLength();
+        if (size == 0)
+            return ti.emptySequence;
+        // Each value takes at least its tag byte.
+        Object[] a = new Object[in.capacity(size, 1)];
+        for (int i = 0; i < size; i++) {
+            if (i == a.length)
+                a = Arrays.copyOf(a, (int) Math.min(size, 2L * a.length));
+            a[i] = readValue(in);
+        }
+        return new ObjectArraySequence<T>(ti, (T[]) a, true);
+    }
+
+    /**
+     * Load a class named in the data, which must be a subtype of type, with
+     * the context class loader if there is one.  The class is checked before
+     * it is initialized, so that bad data can't run the static initializer of
+     * an unrelated class.  It is then initialized, so that the type info of a
+     * class like Duration is registered.
+     */
+    protected <T> Class<? extends T> loadClass(String name, Class<T> type) throws IOException {
+        try {
+            Class<?> cls = null;
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            if (loader != null) {
+                try {
+                    cls = Class.forName(name, false, loader);
+                } catch (ClassNotFoundException ignored) {
+                    // Try our own loader.
+                }
+            }
+            if (cls == null)
+                cls = Class.forName(name, false, SequenceCodec.class.getClassLoader());
+            if (!type.isAssignableFrom(cls))
+                throw new IOException("not a " + type.getName() + ": " + name);
+            return Class.forName(name, true, cls.getClassLoader()).asSubclass(type);
+        } catch (ClassNotFoundException ex) {
+            IOException ioe = new IOException("class not found: " + name);
+            ioe.initCause(ex);
+            throw ioe;
+        }
+    }
+}
@@ -23,6 +23,9 @@
 
 package com.sun.javafx.runtime.sequence;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
 import java.util.*;
 
 import com.sun.javafx.runtime.AssignToBoundException;
@@ -118,6 +121,32 @@ public class SequencesBase {
         return unboxed;
     }
 
+    /**
+     * Copy a range of the elements of a sequence into dest, which may be an
+     * Object[] or an array of any primitive type, using the matching
+     * toArray method of the sequence.
+     */
+    static void toArray(Sequence<?> seq, int sourceOffset, int length, Object dest, int destOffset) {
+        if (dest instanceof Object[])
+            seq.toArray(sourceOffset, length, (Object[]) dest, destOffset);
+        else if (dest instanceof int[])
+            seq.toArray(sourceOffset, length, (int[]) dest, destOffset);
+        else if (dest instanceof float[])
+            seq.toArray(sourceOffset, length, (float[]) dest, destOffset);
+        else if (dest instanceof double[])
+            seq.toArray(sourceOffset, length, (double[]) dest, destOffset);
+        else if (dest instanceof long[])
+            seq.toArray(sourceOffset, length, (long[]) dest, destOffset);
+        else if (dest instanceof boolean[])
+            seq.toArray(sourceOffset, length, (boolean[]) dest, destOffset);
+        else if (dest instanceof short[])
+            seq.toArray(sourceOffset, length, (short[]) dest, destOffset);
+        else if (dest instanceof byte[])
+            seq.toArray(sourceOffset, length, (byte[]) dest, destOffset);
+        else
+            seq.toArray(sourceOffset, length, (char[]) dest, destOffset);
+    }
+
     /** Convert a Sequence<Long> to an array */
     public static long[] toLongArray(Sequence<? extends Number> seq) {
         int size = seq.size();
@@ -189,8 +218,12 @@ public class SequencesBase {
                 arr = (ObjectArraySequence) value;
                 if (! arr.isShared()) {
                     // FIXME: arr.setElementType(typeInfo);
+                    if (ArraySequence.collectCopyStatistics)
+                        ArraySequence.countCopy(false);
                     return arr;
                 }
+                if (ArraySequence.collectCopyStatistics)
+                    ArraySequence.countCopy(true);
                 // Special case - we might as well re-use an empty array.
                 if (arr.array.length == 0) {
                     arr = new ObjectArraySequence(typeInfo, arr.array, true);
@@ -210,8 +243,12 @@ public class SequencesBase {
                 arr = (ArraySequence) value;
                 if (! arr.isShared()) {
                     // FIXME: arr.setElementType(typeInfo);
+                    if (ArraySequence.collectCopyStatistics)
+                        ArraySequence.countCopy(false);
                     return arr;
                 }
+                if (ArraySequence.collectCopyStatistics)
+                    ArraySequence.countCopy(true);
             }
             arr = typeInfo.emptySequence.makeNew(0);
             arr.add(value);
@@ -223,9 +260,68 @@ public class SequencesBase {
     public static<T> T incrementSharing(T value) {
         if (value instanceof ArraySequence)
             ((ArraySequence) value).incrementSharing();
+        else if (value instanceof ChunkedSequence)
+            ((ChunkedSequence<?>) value).incrementSharing();
         return value;
     }
 
+    /**
+     * Release the caller's reference to oldValue, if it is replaced by a
+     * different sequence, and return newValue.
+     * The update methods below ({@code set}, {@code insert}, {@code replaceSlice}
+     * and the methods defined in terms of them) are called as
+     * {@code x = update(x, ...)}, where the variable x has a counted
+     * reference to its value (see {@link #incrementSharing}).  So when the
+     * result is not x itself, x no longer refers to the old value, and the
+     * old value may become unshared: a sequence that was shared by two
+     * variables is updated in place through the remaining one once the
+     * other has been assigned or copied on write.
+     */
+    static <T> Sequence<? extends T> release(Sequence<?> oldValue, Sequence<? extends T> newValue) {
+        if (oldValue != newValue)
+            oldValue.decrementSharing();
+        return newValue;
+    }
+
+    /**
+     * Called once the triggers of an update of a sequence variable have run,
+     * to release the variable's reference to oldValue, as {@link #release}
+     * does, and trim newValue.  The old value is only released now, since
+     * the triggers are passed it as the old value of the variable: if it
+     * were unshared while they run, an update they made to another variable
+     * sharing it would change it in place under them.
+     */
+    static void afterTrigger(Sequence<?> oldValue, Sequence<?> newValue) {
+        if (oldValue != newValue)
+            oldValue.decrementSharing();
+        trimAfterTrigger(newValue);
+    }
+
+    /**
+     * Called once the triggers of an update of a sequence variable have run.
+     * The gap of the new value no longer holds old values for the triggers,
+     * so compact it if it has become mostly gap.
+     */
+    static void trimAfterTrigger(Sequence<?> value) {
+        if (ArraySequence.trimGapPercent > 0 && value instanceof ArraySequence)
+            ((ArraySequence<?>) value).trimIfSparse();
+    }
+
+    /**
+     * Statistics on copy-on-write, collected when the javafx.sequence.copyStats
+     * property is set.  Returns, since startup or the last reset: the number
+     * of updates of an array sequence done in place, and the number that had
+     * to copy it because it was shared.
+     */
+    public static long[] getCopyStatistics() {
+        return new long[] { ArraySequence.copiesAvoided.get(), ArraySequence.copiesMade.get() };
+    }
+
+    public static void resetCopyStatistics() {
+        ArraySequence.copiesAvoided.set(0);
+        ArraySequence.copiesMade.set(0);
+    }
+
     /***************************************************/
     /* Methods for constructing sequences from scratch */
     /***************************************************/
@@ -259,6 +355,31 @@ public class SequencesBase {
             return new ObjectArraySequence<T>(ti, values);
     }
 
+    /**
+     * Create a read-only Double sequence of count elements, read from file
+     * starting at byte offset, in big-endian order (as written by
+     * DataOutputStream).  The file is memory-mapped, not read: elements are
+     * decoded when accessed, and are only copied to the heap if the sequence
+     * is modified.
+     */
+    public static Sequence<Double> mapDoubles(File file, long offset, int count) throws IOException {
+        return MappedSequence.map(TypeInfo.Double, file, offset, count, ByteOrder.BIG_ENDIAN);
+    }
+
+    /** Create a read-only Float (Number) sequence from a memory-mapped file; see mapDoubles. */
+    public static Sequence<Float> mapFloats(File file, long offset, int count) throws IOException {
+        return MappedSequence.map(TypeInfo.Float, file, offset, count, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Create a read-only sequence from a memory-mapped file, with elements
+     * in the specified byte order; see mapDoubles.  The element type must be
+     * Integer, Long, Float or Double.
+     */
+    public static<T> Sequence<T> map(TypeInfo<T> ti, File file, long offset, int count, ByteOrder order) throws IOException {
+        return MappedSequence.map(ti, file, offset, count, order);
+    }
+
     /** Create an Integer range sequence ranging from lower to upper inclusive. */
     public static Sequence<Integer> range(int lower, int upper) {
         return new IntRangeSequence(lower, upper);
@@ -279,6 +400,43 @@ public class SequencesBase {
         return new IntRangeSequence(lower, upper, step, true);
     }
 
+    /**
+     * The sequence of {@code x * scale + offset} for each x in seq, as
+     * computed by {@code for (x in seq) x * scale + offset}.  The compiler
+     * uses this for a for-expression over an integer range whose body is
+     * such an expression.  When seq is a range, so is the result, and no
+     * elements are stored.
+     */
+    public static Sequence<Integer> affine(Sequence<? extends Integer> seq, int scale, int offset) {
+        int size = seq.size();
+        if (size == 0)
+            return TypeInfo.Integer.emptySequence;
+        if (seq instanceof IntRangeSequence)
+            return ((IntRangeSequence) seq).affine(scale, offset);
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++)
+            values[i] = seq.getAsInt(i) * scale + offset;
+        return new IntArraySequence(TypeInfo.Integer, values, true);
+    }
+
+    /**
+     * The Number sequence of {@code x * scale + offset} for each x in seq,
+     * computed in float arithmetic as the for-expression would.  An offset
+     * of -0.0f stands for none.  When seq is a range, the result is a view
+     * that computes each element as it is read.
+     */
+    public static Sequence<Float> affine(Sequence<? extends Integer> seq, float scale, float offset) {
+        int size = seq.size();
+        if (size == 0)
+            return TypeInfo.Float.emptySequence;
+        if (seq instanceof IntRangeSequence)
+            return new ScaledRangeSequence((IntRangeSequence) seq, scale, offset);
+        float[] values = new float[size];
+        for (int i = 0; i < size; i++)
+            values[i] = (float) seq.getAsInt(i) * scale + offset;
+        return new FloatArraySequence(TypeInfo.Float, values, true);
+    }
+
     /** Create a double range sequence ranging from lower to upper inclusive, incrementing by 1.0 */
     public static Sequence<Float> range(float lower, float upper) {
         return new NumberRangeSequence(lower, upper, 1.0f);
@@ -308,13 +466,126 @@ public class SequencesBase {
         else if (cardinality == seq.size() && bits.nextClearBit(0) == seq.size())
             return seq;
         else {
-            ObjectArraySequence<T> result = new ObjectArraySequence(cardinality, seq.getElementType());
-            for (int i = bits.nextSetBit(0), next = 0; i >= 0; i = bits.nextSetBit(i + 1))
-                result.add(seq.get(i));
+            // Copy runs of selected elements, so primitive elements are not boxed.
+            ArraySequence<T> result = seq.getElementType().emptySequence.makeNew(cardinality);
+            int length = seq.size();
+            for (int i = bits.nextSetBit(0); i >= 0 && i < length; ) {
+                int end = Math.min(bits.nextClearBit(i), length);
+                int size = result.size();
+                result.replace(size, size, seq, i, end, false);
+                i = bits.nextSetBit(end);
+            }
             return result;
         }
     }
 
+    /** Create a filtered sequence, containing the elements of seq which match the predicate.
+     * The elements are passed to the predicate, and stored in the result, unboxed. */
+    public static Sequence<Integer> filter(Sequence<? extends Integer> seq, IntSequencePredicate predicate) {
+        int size = seq.size();
+        int[] values = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int value = seq.getAsInt(i);
+            if (predicate.matches(seq, i, value))
+                values[count++] = value;
+        }
+        if (count == size)
+            return upcast(seq);
+        else if (count == 0)
+            return TypeInfo.Integer.emptySequence;
+        else
+            return new IntArraySequence(values, 0, count);
+    }
+
+    public static Sequence<Long> filter(Sequence<? extends Long> seq, LongSequencePredicate predicate) {
+        int size = seq.size();
+        long[] values = new long[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            long value = seq.getAsLong(i);
+            if (predicate.matches(seq, i, value))
+                values[count++] = value;
+        }
+        if (count == size)
+            return upcast(seq);
+        else if (count == 0)
+            return TypeInfo.Long.emptySequence;
+        else
+            return new LongArraySequence(values, 0, count);
+    }
+
+    public static Sequence<Float> filter(Sequence<? extends Float> seq, FloatSequencePredicate predicate) {
+        int size = seq.size();
+        float[] values = new float[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            float value = seq.getAsFloat(i);
+            if (predicate.matches(seq, i, value))
+                values[count++] = value;
+        }
+        if (count == size)
+            return upcast(seq);
+        else if (count == 0)
+            return TypeInfo.Float.emptySequence;
+        else
+            return new FloatArraySequence(values, 0, count);
+    }
+
+    public static Sequence<Double> filter(Sequence<? extends Double> seq, DoubleSequencePredicate predicate) {
+        int size = seq.size();
+        double[] values = new double[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            double value = seq.getAsDouble(i);
+            if (predicate.matches(seq, i, value))
+                values[count++] = value;
+        }
+        if (count == size)
+            return upcast(seq);
+        else if (count == 0)
+            return TypeInfo.Double.emptySequence;
+        else
+            return new DoubleArraySequence(values, 0, count);
+    }
+
+    /** Return a BitSet indicating which elements of seq match the predicate, passing the elements unboxed. */
+    public static BitSet getBits(Sequence<? extends Integer> seq, IntSequencePredicate predicate) {
+        int size = seq.size();
+        BitSet bits = new BitSet(size);
+        for (int i = 0; i < size; i++)
+            if (predicate.matches(seq, i, seq.getAsInt(i)))
+                bits.set(i);
+        return bits;
+    }
+
+    public static BitSet getBits(Sequence<? extends Long> seq, LongSequencePredicate predicate) {
+        int size = seq.size();
+        BitSet bits = new BitSet(size);
+        for (int i = 0; i < size; i++)
+            if (predicate.matches(seq, i, seq.getAsLong(i)))
+                bits.set(i);
+        return bits;
+    }
+
+    public static BitSet getBits(Sequence<? extends Float> seq, FloatSequencePredicate predicate) {
+        int size = seq.size();
+        BitSet bits = new BitSet(size);
+        for (int i = 0; i < size; i++)
+            if (predicate.matches(seq, i, seq.getAsFloat(i)))
+                bits.set(i);
+        return bits;
+    }
+
+    public static BitSet getBits(Sequence<? extends Double> seq, DoubleSequencePredicate predicate) {
+        int size = seq.size();
+        BitSet bits = new BitSet(size);
+        for (int i = 0; i < size; i++)
+            if (predicate.matches(seq, i, seq.getAsDouble(i)))
+                bits.set(i);
+        return bits;
+    }
+
     /** Extract a subsequence from the specified sequence, starting as the specified start position, and up to but
      * not including the specified end position.  If the start position is negative it is assumed to be zero; if the
      * end position is greater than seq.size() it is assumed to be seq.size().  */
@@ -331,6 +602,29 @@ public class SequencesBase {
         }
     }
 
+    /**
+     * Statistics on slices, collected when the javafx.sequence.sliceStats
+     * property is set.  Returns, since startup or the last reset: the number
+     * of slice views created, the number of elements visible through them,
+     * the number of elements of their base sequences they keep reachable,
+     * the number of slices that were copied instead of viewed, and the
+     * number of elements copied for them.
+     */
+    public static long[] getSliceStatistics() {
+        return new long[] {
+            SubSequence.viewCount.get(), SubSequence.visibleCount.get(), SubSequence.retainedCount.get(),
+            SubSequence.copyCount.get(), SubSequence.copiedCount.get()
+        };
+    }
+
+    public static void resetSliceStatistics() {
+        SubSequence.viewCount.set(0);
+        SubSequence.visibleCount.set(0);
+        SubSequence.retainedCount.set(0);
+        SubSequence.copyCount.set(0);
+        SubSequence.copiedCount.set(0);
+    }
+
     public static int calculateIntRangeSize(int lower, int upper, int step, boolean exclusive) {
         if (step == 0) {
             // Undo JFXC-3735 - because of forward reference binds, zero happens frequently.
@@ -515,17 +809,26 @@ public class SequencesBase {
         int otherSize = size(other);
         if (oneSize == 0)
             return (otherSize == 0);
-        else if (oneSize != otherSize)
+        if (oneSize != otherSize)
             return false;
-        else {
-            Iterator<?> it1 = one.iterator();
-            Iterator<?> it2 = other.iterator();
-            while (it1.hasNext()) {
-                if (! it1.next().equals(it2.next()))
-                    return false;
-            }
+        if (one == other)
             return true;
+        if (one instanceof ArraySequence && other instanceof ArraySequence) {
+            // Cached hash codes, then the arrays themselves.
+            ArraySequence<?> arr1 = (ArraySequence<?>) one;
+            ArraySequence<?> arr2 = (ArraySequence<?>) other;
+            if (ArraySequence.knownUnequal(arr1, arr2))
+                return false;
+            if (arr1.sameArrayKind(arr2))
+                return arr1.rangeEquals(0, arr2, 0, oneSize);
         }
+        Iterator<?> it1 = one.iterator();
+        Iterator<?> it2 = other.iterator();
+        while (it1.hasNext()) {
+            if (! it1.next().equals(it2.next()))
+                return false;
+        }
+        return true;
     }
 
     public static<T> boolean isEqualByContentIdentity(Sequence<? extends T> one, Sequence<? extends T> other) {
@@ -557,6 +860,9 @@ public class SequencesBase {
             }
         }
         */
+        if (size > 0 && seq instanceof ArraySequence && slice instanceof ArraySequence
+                && ((ArraySequence<?>) seq).sameArrayKind((ArraySequence<?>) slice))
+            return ((ArraySequence<?>) seq).rangeEquals(startPos, (ArraySequence<?>) slice, 0, size);
         for (int i = 0;  i < size;  i++) {
             if (!seq.get(startPos+i).equals(slice.get(i)))
                 return false;
@@ -608,6 +914,9 @@ public class SequencesBase {
         if (seq.isEmpty())
             return -1;
         final int length = seq.size();
+        int index = binarySearchPrimitive(seq, length, key);
+        if (index != NOT_PRIMITIVE)
+            return index;
         T[] array = Util.<T>newComparableArray(length);
         seq.toArray(0, length, array, 0);
         return Arrays.binarySearch(array, key);
@@ -640,6 +949,11 @@ public class SequencesBase {
         if (seq.isEmpty())
             return -1;
         final int length = seq.size();
+        if (c == null) {
+            int index = binarySearchPrimitive(seq, length, key);
+            if (index != NOT_PRIMITIVE)
+                return index;
+        }
         T[] array = Util.<T>newObjectArray(length);
         seq.toArray(0, length, array, 0);
         return Arrays.binarySearch(array, (T)key, c);
@@ -701,6 +1015,9 @@ public class SequencesBase {
     public static <T extends Comparable> T max (Sequence<T> seq) {
         if (seq == null || seq.isEmpty())
             throw new IllegalArgumentException("empty sequence passed to Sequences.max");
+        int index = extremePrimitive(seq, true);
+        if (index != NOT_PRIMITIVE)
+            return seq.get(index);
 
         T result = seq.get(0);
         for (T val : seq) {
@@ -761,6 +1078,9 @@ public class SequencesBase {
     public static <T extends Comparable> T min (Sequence<T> seq) {
         if (seq == null || seq.isEmpty())
             throw new IllegalArgumentException("empty sequence passed to Sequences.min");
+        int index = extremePrimitive(seq, false);
+        if (index != NOT_PRIMITIVE)
+            return seq.get(index);
 
         T result = seq.get(0);
         for (T val : seq) {
@@ -889,6 +1209,9 @@ public class SequencesBase {
         if (seq.isEmpty())
             return seq.getEmptySequence();
         final int length = seq.size();
+        Sequence<? extends T> sorted = sortPrimitive(seq, length);
+        if (sorted != null)
+            return sorted;
         T[] array = Util.<T>newComparableArray(length);
         seq.toArray(0, length, array, 0);
         Arrays.sort(array);
@@ -923,6 +1246,11 @@ public class SequencesBase {
         if (seq.isEmpty())
             return seq.getEmptySequence();
         final int length = seq.size();
+        if (c == null) {
+            Sequence<? extends T> sorted = sortPrimitive(seq, length);
+            if (sorted != null)
+                return sorted;
+        }
         T[] array = Util.<T>newObjectArray(length);
         seq.toArray(0, length, array, 0);
         Arrays.sort(array, c);
@@ -933,12 +1261,285 @@ public class SequencesBase {
      * contents of the existing sequence
      * */
     public static <T> Sequence<T> shuffle (Sequence<T> seq) {
+        Sequence<T> shuffled = shufflePrimitive(seq);
+        if (shuffled != null)
+            return shuffled;
         T[] array = toArray(seq);
         List<? extends T> list = Arrays.asList(array);
         Collections.shuffle(list);
         return Sequences.make(seq.getElementType(), list);
     }
 
+    // Boxing-free versions of sort, binarySearch, min, max and shuffle, for
+    // sequences whose element type is primitive.  They read the elements
+    // with getAsXxx or toArray(..., xxx[], ...), and build results with the
+    // handoff constructors of the XxxArraySequence classes.
+
+    /** Returned by the index helpers below for a non-primitive element type. */
+    private static final int NOT_PRIMITIVE = Integer.MIN_VALUE;
+
+    private static Random shuffleRandom;
+
+    /**
+     * Sort a sequence of a primitive element type into a new sequence.
+     * Returns null for other element types.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Sequence<? extends T> sortPrimitive(Sequence<T> seq, int length) {
+        TypeInfo<T> ti = seq.getElementType();
+        switch (ti.type) {
+            case INT: {
+                int[] array = new int[length];
+                seq.toArray(0, length, array, 0);
+                Arrays.sort(array);
+                return (Sequence<T>) new IntArraySequence(TypeInfo.Integer, array, true);
+            }
+            case LONG: {
+                long[] array = new long[length];
+                seq.toArray(0, length, array, 0);
+                Arrays.sort(array);
+                return (Sequence<T>) new LongArraySequence(TypeInfo.Long, array, true);
+            }
+            case FLOAT: {
+                float[] array = new float[length];
+                seq.toArray(0, length, array, 0);
+                Arrays.sort(array);
+                return (Sequence<T>) new FloatArraySequence(TypeInfo.Float, array, true);
+            }
+            case DOUBLE: {
+                double[] array = new double[length];
+                seq.toArray(0, length, array, 0);
+                Arrays.sort(array);
+                return (Sequence<T>) new DoubleArraySequence(TypeInfo.Double, array, true);
+            }
+            case SHORT: {
+                short[] array = new short[length];
+                seq.toArray(0, length, array, 0);
+                Arrays.sort(array);
+                return (Sequence<T>) new ShortArraySequence(TypeInfo.Short, array, true);
+            }
+            case BYTE: {
+                byte[] array = new byte[length];
+                seq.toArray(0, length, array, 0);
+                Arrays.sort(array);
+                return (Sequence<T>) new ByteArraySequence(TypeInfo.Byte, array, true);
+            }
+            case CHAR: {
+                char[] array = new char[length];
+                seq.toArray(0, length, array, 0);
+                Arrays.sort(array);
+                return (Sequence<T>) new CharArraySequence(TypeInfo.Character, array, true);
+            }
+            case BOOLEAN: {
+                // false < true: count the falses.
+                int falses = 0;
+                for (int i = 0; i < length; i++) {
+                    if (!seq.getAsBoolean(i))
+                        falses++;
+                }
+                boolean[] array = new boolean[length];
+                Arrays.fill(array, falses, length, true);
+                return (Sequence<T>) new BooleanArraySequence(TypeInfo.Boolean, array, true);
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Binary search of a sorted sequence of a primitive element type, with
+     * the same result as Arrays.binarySearch.  Returns NOT_PRIMITIVE for
+     * other element types, or if the key is not of the element type.
+     */
+    private static int binarySearchPrimitive(Sequence<?> seq, int length, Object key) {
+        int lo = 0;
+        int hi = length - 1;
+        switch (seq.getElementType().type) {
+            case INT:
+                if (!(key instanceof Integer))
+                    break;
+                int intKey = ((Integer) key).intValue();
+                while (lo <= hi) {
+                    int mid = (lo + hi) >>> 1;
+                    int value = seq.getAsInt(mid);
+                    if (value < intKey)
+                        lo = mid + 1;
+                    else if (value > intKey)
+                        hi = mid - 1;
+                    else
+                        return mid;
+                }
+                return -(lo + 1);
+            case LONG:
+                if (!(key instanceof Long))
+                    break;
+                long longKey = ((Long) key).longValue();
+                while (lo <= hi) {
+                    int mid = (lo + hi) >>> 1;
+                    long value = seq.getAsLong(mid);
+                    if (value < longKey)
+                        lo = mid + 1;
+                    else if (value > longKey)
+                        hi = mid - 1;
+                    else
+                        return mid;
+                }
+                return -(lo + 1);
+            case FLOAT:
+                if (!(key instanceof Float))
+                    break;
+                float floatKey = ((Float) key).floatValue();
+                while (lo <= hi) {
+                    int mid = (lo + hi) >>> 1;
+                    int cmp = Float.compare(seq.getAsFloat(mid), floatKey);
+                    if (cmp < 0)
+                        lo = mid + 1;
+                    else if (cmp > 0)
+                        hi = mid - 1;
+                    else
+                        return mid;
+                }
+                return -(lo + 1);
+            case DOUBLE:
+                if (!(key instanceof Double))
+                    break;
+                double doubleKey = ((Double) key).doubleValue();
+                while (lo <= hi) {
+                    int mid = (lo + hi) >>> 1;
+                    int cmp = Double.compare(seq.getAsDouble(mid), doubleKey);
+                    if (cmp < 0)
+                        lo = mid + 1;
+                    else if (cmp > 0)
+                        hi = mid - 1;
+                    else
+                        return mid;
+                }
+                return -(lo + 1);
+        }
+        return NOT_PRIMITIVE;
+    }
+
+    /**
+     * Index of the first maximum (or minimum) element of a non-empty
+     * sequence of a primitive element type, in natural order.  Returns
+     * NOT_PRIMITIVE for other element types.
+     */
+    private static int extremePrimitive(Sequence<?> seq, boolean max) {
+        final int length = seq.size();
+        int best = 0;
+        switch (seq.getElementType().type) {
+            case INT: {
+                int bestValue = seq.getAsInt(0);
+                for (int i = 1; i < length; i++) {
+                    int value = seq.getAsInt(i);
+                    if (max ? value > bestValue : value < bestValue) {
+                        bestValue = value;
+                        best = i;
+                    }
+                }
+                return best;
+            }
+            case LONG: {
+                long bestValue = seq.getAsLong(0);
+                for (int i = 1; i < length; i++) {
+                    long value = seq.getAsLong(i);
+                    if (max ? value > bestValue : value < bestValue) {
+                        bestValue = value;
+                        best = i;
+                    }
+                }
+                return best;
+            }
+            case FLOAT: {
+                float bestValue = seq.getAsFloat(0);
+                for (int i = 1; i < length; i++) {
+                    float value = seq.getAsFloat(i);
+                    int cmp = Float.compare(value, bestValue);
+                    if (max ? cmp > 0 : cmp < 0) {
+                        bestValue = value;
+                        best = i;
+                    }
+                }
+                return best;
+            }
+            case DOUBLE: {
+                double bestValue = seq.getAsDouble(0);
+                for (int i = 1; i < length; i++) {
+                    double value = seq.getAsDouble(i);
+                    int cmp = Double.compare(value, bestValue);
+                    if (max ? cmp > 0 : cmp < 0) {
+                        bestValue = value;
+                        best = i;
+                    }
+                }
+                return best;
+            }
+            default:
+                return NOT_PRIMITIVE;
+        }
+    }
+
+    /**
+     * Shuffle a sequence of a primitive element type into a new sequence,
+     * as Collections.shuffle does.  Returns null for other element types.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Sequence<T> shufflePrimitive(Sequence<T> seq) {
+        TypeInfo<T> ti = seq.getElementType();
+        final int length = seq.size();
+        Random rnd = shuffleRandom;
+        if (rnd == null)
+            shuffleRandom = rnd = new Random();
+        switch (ti.type) {
+            case INT: {
+                int[] array = new int[length];
+                seq.toArray(0, length, array, 0);
+                for (int i = length; i > 1; i--) {
+                    int j = rnd.nextInt(i);
+                    int tmp = array[i-1];
+                    array[i-1] = array[j];
+                    array[j] = tmp;
+                }
+                return (Sequence<T>) new IntArraySequence(TypeInfo.Integer, array, true);
+            }
+            case LONG: {
+                long[] array = new long[length];
+                seq.toArray(0, length, array, 0);
+                for (int i = length; i > 1; i--) {
+                    int j = rnd.nextInt(i);
+                    long tmp = array[i-1];
+                    array[i-1] = array[j];
+                    array[j] = tmp;
+                }
+                return (Sequence<T>) new LongArraySequence(TypeInfo.Long, array, true);
+            }
+            case FLOAT: {
+                float[] array = new float[length];
+                seq.toArray(0, length, array, 0);
+                for (int i = length; i > 1; i--) {
+                    int j = rnd.nextInt(i);
+                    float tmp = array[i-1];
+                    array[i-1] = array[j];
+                    array[j] = tmp;
+                }
+                return (Sequence<T>) new FloatArraySequence(TypeInfo.Float, array, true);
+            }
+            case DOUBLE: {
+                double[] array = new double[length];
+                seq.toArray(0, length, array, 0);
+                for (int i = length; i > 1; i--) {
+                    int j = rnd.nextInt(i);
+                    double tmp = array[i-1];
+                    array[i-1] = array[j];
+                    array[j] = tmp;
+                }
+                return (Sequence<T>) new DoubleArraySequence(TypeInfo.Double, array, true);
+            }
+            default:
+                return null;
+        }
+    }
+
     public static <T> T getFromNewElements(FXObject instance, int varNum, int loIndex, int inserted, int k) {
         if (k >= inserted)
             k = -1;
@@ -953,7 +1554,7 @@ public class SequencesBase {
 
     public static <T> Sequence<? extends T> replaceSlice(Sequence<? extends T> oldValue, T newValue, int startPos, int endPos/*exclusive*/) {
         if (preReplaceSlice(oldValue, newValue, startPos, endPos)) {
-            return replaceSliceInternal(oldValue, newValue, startPos, endPos, false);
+            return release(oldValue, replaceSliceInternal(oldValue, newValue, startPos, endPos, false));
         }
         else
             return oldValue;
@@ -992,6 +1593,8 @@ public class SequencesBase {
             endPos = oldSize;
         else if (endPos < startPos)
             endPos = startPos;
+        if (ChunkedSequence.useFor(oldValue))
+            return ChunkedSequence.replace(oldValue, startPos, endPos, new SingletonSequence<T>((TypeInfo<T>) oldValue.getElementType(), newValue));
         ObjectArraySequence<T> arr = forceNonSharedObjectArraySequence((TypeInfo<T>) oldValue.getElementType(), oldValue);
         arr.replace(startPos, endPos, (T) newValue, hasTrigger);
         if (hasTrigger)
@@ -1021,6 +1624,7 @@ public class SequencesBase {
             Sequence<? extends T> arr = replaceSliceInternal(oldValue, newValue, startPos, endPos, true);
             instance.seq$(varNum, arr);
             instance.invalidate$(varNum, startPos, endPos, newLength,  FXObject.PHASE_TRANS$CASCADE_TRIGGER);
+            afterTrigger(oldValue, arr);
         }
     }
 
@@ -1050,11 +1654,13 @@ public class SequencesBase {
             if (newValues == null)
                 newValues = oldValue.getEmptySequence();
             newValues.incrementSharing();
-            return newValues;
+            return release(oldValue, newValues);
         }
+        if (ChunkedSequence.useFor(oldValue))
+            return release(oldValue, ChunkedSequence.replace(oldValue, startPos, endPos, newValues));
         ArraySequence<T> arr = forceNonSharedArraySequence((TypeInfo<T>) oldValue.getElementType(), oldValue);
         arr.replace(startPos, endPos, newValues, 0, inserted, false);
-        return arr;
+        return release(oldValue, arr);
     }
     //where
     private static <T> boolean preReplaceSlice(Sequence<? extends T> oldValue, Sequence<? extends T> newValues, int startPos, int endPos/*exclusive*/) {
@@ -1097,6 +1703,8 @@ public class SequencesBase {
             newValues.incrementSharing();
             return newValues;
         }
+        if (ChunkedSequence.useFor(oldValue))
+            return ChunkedSequence.replace(oldValue, startPos, endPos, newValues);
         ArraySequence<T> arr = forceNonSharedArraySequence((TypeInfo<T>) oldValue.getElementType(), oldValue);
         arr.replace(startPos, endPos, newValues, 0, inserted, hasTrigger);
         if (hasTrigger)
@@ -1126,6 +1734,7 @@ public class SequencesBase {
             Sequence<? extends T> arr = replaceSliceInternal(oldValue, newValues, startPos, endPos, true);
             instance.seq$(varNum, arr);
             instance.invalidate$(varNum, startPos, endPos, newLength,  FXObject.PHASE_TRANS$CASCADE_TRIGGER);
+            afterTrigger(oldValue, arr);
         }
     }
 
@@ -1135,7 +1744,7 @@ public class SequencesBase {
             return replaceSlice(oldValue, newValue, 0, oldValue.size());
         }
         newValue.incrementSharing();
-        return newValue;
+        return release(oldValue, newValue);
     }
 
     public static <T> Sequence<? extends T> set(FXObject instance, int varNum, Sequence<? extends T> newValue) { 
@@ -1161,9 +1770,15 @@ public class SequencesBase {
     }
 
     public static <T> Sequence<? extends T> insert(Sequence<? extends T> oldValue, T newValue) {
+        return release(oldValue, insertInternal(oldValue, newValue));
+    }
+    //where
+    private static <T> Sequence<? extends T> insertInternal(Sequence<? extends T> oldValue, T newValue) {
         if (newValue == null)
             return oldValue;
         int oldSize = oldValue.size();
+        if (ChunkedSequence.useFor(oldValue))
+            return ChunkedSequence.replace(oldValue, oldSize, oldSize, new SingletonSequence<T>((TypeInfo<T>) oldValue.getElementType(), newValue));
         ObjectArraySequence<T> arr = forceNonSharedObjectArraySequence((TypeInfo<T>) oldValue.getElementType(), oldValue);
         arr.replace(oldSize, oldSize, (T) newValue, true);
         return arr;
@@ -1183,17 +1798,24 @@ public class SequencesBase {
         }
         int oldSize = oldValue.size();
         int newLength = newValue==null?0:1;
-        Sequence<? extends T> arr = insert(oldValue, newValue);
+        Sequence<? extends T> arr = insertInternal(oldValue, newValue);
         instance.invalidate$(varNum, oldSize, oldSize, newLength, FXObject.PHASE_TRANS$CASCADE_INVALIDATE);
         instance.seq$(varNum, arr);
         instance.invalidate$(varNum, oldSize, oldSize, newLength,  FXObject.PHASE_TRANS$CASCADE_TRIGGER);
+        afterTrigger(oldValue, arr);
     }
 
     public static <T> Sequence<? extends T> insert(Sequence<? extends T> oldValue, Sequence<? extends T> values) {
+        return release(oldValue, insertInternal(oldValue, values));
+    }
+    //where
+    private static <T> Sequence<? extends T> insertInternal(Sequence<? extends T> oldValue, Sequence<? extends T> values) {
         int inserted = values.size();
         if (inserted == 0)
             return oldValue;
         int oldSize = oldValue.size();
+        if (ChunkedSequence.useFor(oldValue))
+            return ChunkedSequence.replace(oldValue, oldSize, oldSize, values);
         ArraySequence<T> arr = forceNonSharedArraySequence((TypeInfo<T>) oldValue.getElementType(), oldValue);
         arr.replace(oldSize, oldSize, values, 0, inserted, true);
         return arr;
@@ -1214,10 +1836,11 @@ public class SequencesBase {
         }
         int oldSize = oldValue.size();
         int newLength = values == null ? 0 : values.size();
-        Sequence<? extends T> arr = insert(oldValue, values);
+        Sequence<? extends T> arr = insertInternal(oldValue, values);
         instance.invalidate$(varNum, oldSize, oldSize, newLength, FXObject.PHASE_TRANS$CASCADE_INVALIDATE);
         instance.seq$(varNum, arr);
         instance.invalidate$(varNum, oldSize, oldSize, newLength,  FXObject.PHASE_TRANS$CASCADE_TRIGGER);
+        afterTrigger(oldValue, arr);
 
     }
 
@@ -1253,57 +1876,121 @@ public class SequencesBase {
         return replaceSlice(oldValue, (Sequence<? extends T>)null, begin, end);
     }
 
+    /**
+     * Deleting a value or the elements matching a predicate from a sequence
+     * variable replaces each maximal run of deleted elements separately,
+     * last run first, so triggers and bound sequences see one replacement
+     * per run and the kept elements are left alone.  If this is set, and the
+     * variable's object has no dependents, the range from the first to the
+     * last deleted element is instead replaced by the elements kept in
+     * between, so the variable is updated once.  Setting it asserts that no
+     * on-replace trigger or bind in the same script watches the variable,
+     * since neither shows up as a dependent and both would see the kept
+     * elements as replaced.
+     */
+    static final boolean deleteSpan = Util.getBooleanProperty("javafx.sequence.deleteSpan", false);
+
+    @SuppressWarnings("unchecked")
     public static <T> void deleteValue(FXObject instance, int varNum, T value) {
         if (instance.varTestBits$(varNum, FXObject.VFLGS$IS_BOUND_READONLY, FXObject.VFLGS$IS_BOUND_READONLY)) {
             throw new AssignToBoundException("Cannot mutate bound sequence");
         }
         Sequence<? extends T> oldValue = (Sequence<? extends T>) instance.get$(varNum);
         while (oldValue instanceof SequenceProxy) {
-            SequenceProxy sp = (SequenceProxy) oldValue;
+            SequenceProxy<?> sp = (SequenceProxy<?>) oldValue;
             instance = sp.instance();
             varNum = sp.varNum();
             oldValue = (Sequence<? extends T>) instance.get$(varNum);
         }
-        // It's tempting to just do:
-        //   Sequence<? extends T> arr = deleteValue(oldValue, value);
-        //   instance.seq$(varNum, arr);
-        // However, in that case triggers won't run properly.
-        int hi = -1;
-        for (int i = oldValue.size();  ; ) {
-            boolean matches = --i < 0 ? false : oldValue.get(i).equals(value);
-            if (matches) {
-                if (hi < 0)
-                    hi = i;
-            }
-            else if (hi >= 0) {
-                deleteSlice(instance, varNum, i+1, hi+1);
-                // The following may be redundant - but just in case:
-                oldValue = (Sequence<? extends T>) instance.get$(varNum);
-                hi = -1;
-            }
-            if (i < 0) break;
-        }
+        deleteBits(instance, varNum, oldValue, getValueBits(oldValue, value));
     }
 
     public static <T> Sequence<? extends T> deleteValue(Sequence<? extends T> oldValue, T value) {
-        int hi = -1;
-        for (int i = oldValue.size();  ; ) {
-            boolean matches = --i < 0 ? false : oldValue.get(i).equals(value);
-            if (matches) {
-                if (hi < 0)
-                    hi = i;
-            }
-            else if (hi >= 0) {
-                oldValue = deleteSlice(oldValue, i+1, hi+1);
-                hi = -1;
-            }
-            if (i < 0) break;
+        return deleteBits(oldValue, getValueBits(oldValue, value));
+    }
+
+    /** Delete the elements of a sequence variable which match the predicate. */
+    @SuppressWarnings("unchecked")
+    public static <T> void deleteMatching(FXObject instance, int varNum, SequencePredicate<? super T> predicate) {
+        if (instance.varTestBits$(varNum, FXObject.VFLGS$IS_BOUND_READONLY, FXObject.VFLGS$IS_BOUND_READONLY)) {
+            throw new AssignToBoundException("Cannot mutate bound sequence");
+        }
+        Sequence<? extends T> oldValue = (Sequence<? extends T>) instance.get$(varNum);
+        while (oldValue instanceof SequenceProxy) {
+            SequenceProxy<?> sp = (SequenceProxy<?>) oldValue;
+            instance = sp.instance();
+            varNum = sp.varNum();
+            oldValue = (Sequence<? extends T>) instance.get$(varNum);
+        }
+        deleteBits(instance, varNum, oldValue, ((Sequence<T>) oldValue).getBits(predicate));
+    }
+
+    /** Delete the elements of a sequence which match the predicate. */
+    @SuppressWarnings("unchecked")
+    public static <T> Sequence<? extends T> deleteMatching(Sequence<? extends T> oldValue, SequencePredicate<? super T> predicate) {
+        return deleteBits(oldValue, ((Sequence<T>) oldValue).getBits(predicate));
+    }
+    //where
+    private static <T> BitSet getValueBits(Sequence<? extends T> seq, T value) {
+        int size = seq.size();
+        BitSet bits = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            if (seq.get(i).equals(value))
+                bits.set(i);
+        }
+        return bits;
+    }
+    //where
+    private static <T> void deleteBits(FXObject instance, int varNum, Sequence<? extends T> oldValue, BitSet bits) {
+        int lo = bits.nextSetBit(0);
+        if (lo < 0)
+            return;
+        int hi = bits.length();
+        if (deleteSpan && instance.getListenerCount$() == 0) {
+            replaceSlice(instance, varNum, unselected(oldValue, bits, lo, hi), lo, hi);
+            return;
         }
-        return oldValue;
+        int[] runs = new int[2 * bits.cardinality()];
+        int n = 0;
+        for (int i = lo; i >= 0; i = bits.nextSetBit(runs[n-1])) {
+            runs[n++] = i;
+            runs[n++] = bits.nextClearBit(i);
+        }
+        while (n > 0) {
+            n -= 2;
+            deleteSlice(instance, varNum, runs[n], runs[n+1]);
+        }
+    }
+    //where
+    private static <T> Sequence<? extends T> deleteBits(Sequence<? extends T> oldValue, BitSet bits) {
+        int lo = bits.nextSetBit(0);
+        if (lo < 0)
+            return oldValue;
+        int hi = bits.length();
+        return replaceSlice(oldValue, unselected(oldValue, bits, lo, hi), lo, hi);
+    }
+    //where
+    /**
+     * The elements between lo and hi whose bits are clear, or null if there
+     * are none.  All the set bits must be between lo and hi.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Sequence<? extends T> unselected(Sequence<? extends T> seq, BitSet bits, int lo, int hi) {
+        int count = hi - lo - bits.cardinality();
+        if (count == 0)
+            return null;
+        ArraySequence<T> result = ((TypeInfo<T>) seq.getElementType()).emptySequence.makeNew(count);
+        for (int i = bits.nextClearBit(lo); i < hi; ) {
+            int end = bits.nextSetBit(i);
+            int size = result.size();
+            result.replace(size, size, seq, i, end, false);
+            i = bits.nextClearBit(end);
+        }
+        return result;
     }
 
     public static <T> Sequence<? extends T> deleteAll(Sequence<? extends T> oldValue) {
-        return oldValue.getEmptySequence();
+        return release(oldValue, oldValue.getEmptySequence());
     }
 
     public static <T> void deleteAll(FXObject instance, int varNum) {
@@ -23,6 +23,10 @@
 
 package com.sun.javafx.runtime.sequence;
 
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.javafx.runtime.Util;
+
 /**
  * Represents a portion of another sequence.  Subsequences should be created with the Sequences.subsequence() factory
  * method, rather than with the SubSequence constructor.  O(1) space and time construction costs.
@@ -31,6 +35,23 @@ package com.sun.javafx.runtime.sequence;
  * @author Per Bothner
  */
 class SubSequence<T> extends AbstractSequence<T> {
+    /** Slices of at most this many elements of an array are copied rather than viewed. */
+    static final int copySize = Math.max(0, Util.getIntProperty("javafx.sequence.sliceCopySize", 16));
+
+    /**
+     * A slice showing less than 1/compactRatio of the elements an array
+     * keeps reachable is copied, so it does not pin the whole array.
+     * 0 disables.
+     */
+    static final int compactRatio = Math.max(0, Util.getIntProperty("javafx.sequence.sliceCompactRatio", 8));
+
+    static final boolean collectStatistics = Util.getBooleanProperty("javafx.sequence.sliceStats", false);
+    static final AtomicLong viewCount = new AtomicLong();
+    static final AtomicLong visibleCount = new AtomicLong();
+    static final AtomicLong retainedCount = new AtomicLong();
+    static final AtomicLong copyCount = new AtomicLong();
+    static final AtomicLong copiedCount = new AtomicLong();
+
     protected final Sequence<? extends T> sequence;
     protected final int size;
     private final int startPos;
@@ -69,6 +90,12 @@ class SubSequence<T> extends AbstractSequence<T> {
      *   or {@code 0 <= startPos <= sequence.size()} when {@code size == 0}.
      * @param step The step size (stride) between selected elements in the base {@code sequence}.
      *
+     * If the base is an array (or a ChunkedSequence) and the slice is small,
+     * either absolutely or compared to the base, the elements are copied to
+     * a right-sized ArraySequence instead.  A view would keep the whole base
+     * reachable, and would mark it as shared, so that the next in-place
+     * edit of the base would have to copy it.
+     * A slice of an integer range is itself a range.
      */
     static <T> Sequence make(Sequence<T> sequence, int size, int start, int step) {
         if (size <= 0)
@@ -79,10 +106,50 @@ class SubSequence<T> extends AbstractSequence<T> {
             step = sseq.step * step;
             sequence = sseq.sequence;
         }
+        // A slice of an integer range, or of a view computed from one, is
+        // computed the same way, without the indirection.
+        if (sequence instanceof IntRangeSequence)
+            return ((IntRangeSequence) sequence).slice(size, start, step);
+        if (sequence instanceof ScaledRangeSequence)
+            return ((ScaledRangeSequence) sequence).slice(size, start, step);
+        int retained = retainedSize(sequence);
+        if (retained > 0 && (size <= copySize
+                || (compactRatio > 0 && (long) size * compactRatio < retained)))
+            return copy(sequence, size, start, step);
+        if (collectStatistics) {
+            viewCount.incrementAndGet();
+            visibleCount.addAndGet(size);
+            retainedCount.addAndGet(retained);
+        }
         sequence.incrementSharing();
         return new SubSequence(sequence, size, start, step);
     }
 
+    /**
+     * Number of elements a view of sequence would keep reachable,
+     * or 0 if sequence is not backed by stored elements (for example a range).
+     */
+    static int retainedSize(Sequence<?> sequence) {
+        if (sequence instanceof ArraySequence)
+            return ((ArraySequence) sequence).getRawArrayLength();
+        if (sequence instanceof ChunkedSequence)
+            return sequence.size();
+        return 0;
+    }
+
+    private static <T> Sequence<T> copy(Sequence<T> sequence, int size, int start, int step) {
+        ArraySequence<T> arr = sequence.getElementType().emptySequence.makeNew(size);
+        if (step == 1)
+            arr.replace(0, 0, sequence, start, start + size, false);
+        else
+            arr.add(new SubSequence<T>(sequence, size, start, step));
+        if (collectStatistics) {
+            copyCount.incrementAndGet();
+            copiedCount.addAndGet(size);
+        }
+        return arr;
+    }
+
     @Override
     public T get(int position) {
         if (position < 0 || position >= size)
@@ -159,6 +226,16 @@ class SubSequence<T> extends AbstractSequence<T> {
         return size;
     }
 
+    /** A slice with step 1 uses the cursor of the underlying sequence. */
+    @Override
+    PrimitiveCursor cursor(int startPos, int lastPos) {
+        if (step != 1 || !(sequence instanceof AbstractSequence))
+            return super.cursor(startPos, lastPos);
+        int start = Math.min(Math.max(0, startPos), size);
+        int end = Math.min(Math.max(start, lastPos+1), size);
+        return ((AbstractSequence<?>) sequence).cursor(this.startPos + start, this.startPos + end - 1);
+    }
+
     @Override
     public void toArray(int sourceOffset, int length, Object[] dest, int destOffset) {
         if (sourceOffset < 0 || (length > 0 && sourceOffset + length > size()))
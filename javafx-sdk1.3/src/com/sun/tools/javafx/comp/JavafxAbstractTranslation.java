@@ -2763,6 +2763,8 @@ public abstract class JavafxAbstractTranslation
                     def = SetterStmt(tc, vsym, transInit);
                 }
             } else {
+                if (vsym.isSequence())
+                    transInit = Call(defs.Sequences_incrementSharing, transInit);
                 def = SetStmt(tc, vsym, transInit);
             }
 
@@ -3432,10 +3434,195 @@ public abstract class JavafxAbstractTranslation
             return stmt;
         }
 
+        /**
+         * Translate a for-expression over an integer range whose body is an
+         * affine function of the induction variable, such as
+         *    for (i in [0..n]) i * 2 + 1
+         * into a call
+         *    Sequences.affine(range, scale, offset)
+         * which, for a range, is itself a range or a view computing its
+         * elements as they are read, so no elements are stored.
+         * Returns null if the for-expression is not of this form.
+         */
+        private JCExpression translateAffineRange() {
+            if (tree.getInClauses().size() != 1)
+                return null;
+            JFXForExpressionInClause clause = (JFXForExpressionInClause) tree.getInClauses().get(0);
+            if (clause.hasWhereExpression() || clause.seqExpr.getFXTag() != JavafxTag.SEQUENCE_RANGE
+                    || clause.getVar().type.tag != TypeTags.INT)
+                return null;
+            Symbol sym = clause.getVar().sym;
+            JFXExpression body = tree.getBodyExpression();
+            Type elemType = types.elementType(tree.type);
+            if (elemType.tag == TypeTags.INT) {
+                int[] affine = intAffine(sym, body);
+                if (affine == null)
+                    return null;
+                return Call(defs.Sequences_affine, translateToExpression(clause.seqExpr, clause.seqExpr.type),
+                        Int(affine[0]), Int(affine[1]));
+            } else if (elemType.tag == TypeTags.FLOAT) {
+                float[] affine = floatAffine(sym, body);
+                if (affine == null)
+                    return null;
+                return Call(defs.Sequences_affine, translateToExpression(clause.seqExpr, clause.seqExpr.type),
+                        m().Literal(TypeTags.FLOAT, affine[0]), m().Literal(TypeTags.FLOAT, affine[1]));
+            }
+            return null;
+        }
+
+        /**
+         * {scale, offset} if expr is an Integer expression computing
+         * var * scale + offset from var and literals.  Integer arithmetic
+         * wraps, so any sum, difference, negation and product by a constant
+         * folds into this form exactly.
+         */
+        private int[] intAffine(Symbol var, JFXExpression expr) {
+            expr = skipParens(expr);
+            if (expr == null || expr.type == null || expr.type.tag != TypeTags.INT)
+                return null;
+            switch (expr.getFXTag()) {
+                case IDENT:
+                    return ((JFXIdent) expr).sym == var ? new int[] { 1, 0 } : null;
+                case LITERAL: {
+                    Object value = ((JFXLiteral) expr).getValue();
+                    return value instanceof Number ? new int[] { 0, ((Number) value).intValue() } : null;
+                }
+                case TYPECAST:
+                    return intAffine(var, ((JFXTypeCast) expr).getExpression());
+                case NEG: {
+                    int[] a = intAffine(var, ((JFXUnary) expr).getExpression());
+                    return a == null ? null : new int[] { -a[0], -a[1] };
+                }
+                case PLUS:
+                case MINUS:
+                case MUL: {
+                    JFXBinary binary = (JFXBinary) expr;
+                    int[] l = intAffine(var, binary.getLeftOperand());
+                    int[] r = l == null ? null : intAffine(var, binary.getRightOperand());
+                    if (r == null)
+                        return null;
+                    switch (expr.getFXTag()) {
+                        case PLUS:  return new int[] { l[0] + r[0], l[1] + r[1] };
+                        case MINUS: return new int[] { l[0] - r[0], l[1] - r[1] };
+                        default:
+                            if (l[0] == 0)
+                                return new int[] { r[0] * l[1], r[1] * l[1] };
+                            if (r[0] == 0)
+                                return new int[] { l[0] * r[1], l[1] * r[1] };
+                            return null;
+                    }
+                }
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * {scale, offset} if expr is a Number expression of one of the forms
+         *    v, -v, v*k, k*v, p+c, c+p, p-c, c-p
+         * where v is the Integer induction variable converted to Number, p is
+         * one of the first four forms and k and c are literals.  The loop
+         * would compute these as v * scale + offset, in that order, so
+         * the view computes the same floats.  Other float expressions are
+         * not folded, since reassociating them would change the rounding.
+         * An offset of -0.0f, which leaves every float unchanged, stands
+         * for none.
+         */
+        private float[] floatAffine(Symbol var, JFXExpression expr) {
+            expr = skipParens(expr);
+            if (expr == null || expr.type == null || expr.type.tag != TypeTags.FLOAT)
+                return null;
+            float[] product = floatProduct(var, expr);
+            if (product != null)
+                return new float[] { product[0], -0.0f };
+            if (expr.getFXTag() != JavafxTag.PLUS && expr.getFXTag() != JavafxTag.MINUS)
+                return null;
+            JFXBinary binary = (JFXBinary) expr;
+            boolean minus = expr.getFXTag() == JavafxTag.MINUS;
+            float[] l = floatProduct(var, binary.getLeftOperand());
+            Float r = floatConstant(binary.getRightOperand());
+            if (l != null && r != null)
+                return new float[] { l[0], minus ? -r : r };
+            Float c = floatConstant(binary.getLeftOperand());
+            float[] p = floatProduct(var, binary.getRightOperand());
+            if (c != null && p != null)
+                return new float[] { minus ? -p[0] : p[0], c };
+            return null;
+        }
+
+        /** {scale} if expr is v, -v, v*k or k*v, as for floatAffine. */
+        private float[] floatProduct(Symbol var, JFXExpression expr) {
+            expr = skipParens(expr);
+            if (expr == null || expr.type == null || expr.type.tag != TypeTags.FLOAT)
+                return null;
+            switch (expr.getFXTag()) {
+                case TYPECAST:
+                    return isVar(var, ((JFXTypeCast) expr).getExpression()) ? new float[] { 1.0f } : null;
+                case NEG: {
+                    float[] p = floatProduct(var, ((JFXUnary) expr).getExpression());
+                    return p != null && p[0] == 1.0f ? new float[] { -1.0f } : null;
+                }
+                case MUL: {
+                    JFXBinary binary = (JFXBinary) expr;
+                    float[] l = floatProduct(var, binary.getLeftOperand());
+                    Float r = floatConstant(binary.getRightOperand());
+                    if (l != null && l[0] == 1.0f && r != null)
+                        return new float[] { r };
+                    Float k = floatConstant(binary.getLeftOperand());
+                    float[] p = floatProduct(var, binary.getRightOperand());
+                    if (k != null && p != null && p[0] == 1.0f)
+                        return new float[] { k };
+                    return null;
+                }
+                default:
+                    return isVar(var, expr) ? new float[] { 1.0f } : null;
+            }
+        }
+
+        /** The value of an Integer or Number literal, possibly converted to Number. */
+        private Float floatConstant(JFXExpression expr) {
+            expr = skipParens(expr);
+            if (expr != null && expr.getFXTag() == JavafxTag.TYPECAST)
+                expr = skipParens(((JFXTypeCast) expr).getExpression());
+            if (expr == null || expr.getFXTag() != JavafxTag.LITERAL || expr.type == null
+                    || (expr.type.tag != TypeTags.INT && expr.type.tag != TypeTags.FLOAT))
+                return null;
+            Object value = ((JFXLiteral) expr).getValue();
+            return value instanceof Number ? ((Number) value).floatValue() : null;
+        }
+
+        private boolean isVar(Symbol var, JFXExpression expr) {
+            expr = skipParens(expr);
+            return expr != null && expr.getFXTag() == JavafxTag.IDENT && ((JFXIdent) expr).sym == var;
+        }
+
+        private JFXExpression skipParens(JFXExpression expr) {
+            while (expr != null) {
+                if (expr.getFXTag() == JavafxTag.PARENS) {
+                    expr = ((JFXParens) expr).getExpression();
+                } else if (expr.getFXTag() == JavafxTag.BLOCK_EXPRESSION && ((JFXBlock) expr).getStmts().isEmpty()) {
+                    expr = ((JFXBlock) expr).getValue();
+                } else {
+                    break;
+                }
+            }
+            return expr;
+        }
+
         protected AbstractStatementsResult doit() {
             // sub-translation in done inline -- no super.visitForExpression(tree);
             if (yield() == ToStatement && targetType == syms.voidType) {
                 return new StatementsResult(wrapWithInClause(tree, translateToStatement(tree.getBodyExpression(), targetType)));
+            }
+            JCExpression affine = translateAffineRange();
+            if (affine != null) {
+                if (yield() == ToStatement) {
+                    return toStatementResult(affine, tree.type, targetType);
+                } else {
+                    return toResult(
+                            convertTranslated(affine, diagPos, tree.type, targetType),
+                            targetType);
+                }
             } else {
                 // body has value (non-void)
                 assert tree.type != syms.voidType : "should be handled above";
@@ -146,6 +146,7 @@ public class JavafxDefs {
     private static final String cChecks = runtime_PackageString + ".Checks";
     private static final String cFXConstant = runtime_PackageString + ".FXConstant";
     private static final String cPointer = runtime_PackageString + ".Pointer";
+    private static final String cBindingProfiler = runtime_PackageString + ".BindingProfiler";
     // in runtime.util package
     private static final String cStringLocalization = runtimeUtil_PackageString + ".StringLocalization";
     private static final String cFXFormatter = runtimeUtil_PackageString + ".FXFormatter";
@@ -202,6 +203,7 @@ public class JavafxDefs {
 
     final RuntimeMethod TypeInfo_getTypeInfo;
 
+    final RuntimeMethod Sequences_affine;
     final RuntimeMethod Sequences_calculateIntRangeSize;
     final RuntimeMethod Sequences_calculateFloatRangeSize;
     final RuntimeMethod Sequences_convertCharToNumberSequence;
@@ -251,6 +253,8 @@ public class JavafxDefs {
     final RuntimeMethod Pointer_make;
     final RuntimeMethod Pointer_switchDependence;
 
+    final RuntimeMethod BindingProfiler_recompute;
+
     final RuntimeMethod Duration_valueOf;
 
     final RuntimeMethod StringLocalization_getLocalizedString;
@@ -278,6 +282,7 @@ public class JavafxDefs {
     final Name notifyDependents_FXObjectMethodName;
     final Name getElement_FXObjectMethodName;
     final Name size_FXObjectMethodName;
+    final Name getType_FXObjectMethodName;
     final Name update_FXObjectMethodName;
     final Name complete_FXObjectMethodName;
     final Name initialize_FXObjectMethodName;
@@ -367,6 +372,9 @@ public class JavafxDefs {
     final Name funcCount_FXObjectFieldName;
     final Name outerAccessor_FXObjectFieldName;
     final Name scriptLevelAccess_FXObjectFieldName;
+    final Name varFlags_FXObjectFieldName;
+    final Name getVarFlags_FXObjectMethodName;
+    final Name setVarFlags_FXObjectMethodName;
 
     final Name value_NonLocalReturnExceptionFieldName;
 
@@ -644,6 +652,7 @@ public class JavafxDefs {
         update_FXObjectMethodName = names.fromString("update$");
         getElement_FXObjectMethodName = names.fromString(getElement_AttributeMethodPrefix);
         size_FXObjectMethodName = names.fromString(size_AttributeMethodPrefix);
+        getType_FXObjectMethodName = names.fromString("getType$");
         count_FXObjectMethodName = names.fromString("count$");
         restrictSet_FXObjectMethodName = names.fromString("restrictSet$");
         varState_LocalVarName = names.fromString("varState$");
@@ -653,6 +662,9 @@ public class JavafxDefs {
         varNewValue_ArgName = names.fromString("varNewValue$");
         value_NonLocalReturnExceptionFieldName = names.fromString("value");
         outerAccessor_FXObjectFieldName = names.fromString("accessOuterField$");
+        varFlags_FXObjectFieldName = names.fromString("VarFlags$internal$");
+        getVarFlags_FXObjectMethodName = names.fromString("getVarFlags$internal$");
+        setVarFlags_FXObjectMethodName = names.fromString("setVarFlags$internal$");
         updateInstance_ArgName = names.fromString("instance$");
         obj_ArgName = names.fromString("object$");
         value_ArgName = names.fromString("value$");
@@ -757,6 +769,7 @@ public class JavafxDefs {
         Sequences_sizeOfNewElements = new RuntimeMethod(names, cSequences, "sizeOfNewElements");
         Sequences_getNewElements = new RuntimeMethod(names, cSequences, "getNewElements");
         Sequences_getSingleValue = new RuntimeMethod(names, cSequences, "getSingleValue");
+        Sequences_affine = new RuntimeMethod(names, cSequences, "affine");
         Sequences_range = new RuntimeMethod(names, cSequences, "range");
         Sequences_rangeExclusive = new RuntimeMethod(names, cSequences, "rangeExclusive");
         Sequences_singleton = new RuntimeMethod(names, cSequences, "singleton");
@@ -808,6 +821,8 @@ public class JavafxDefs {
         Pointer_make = new RuntimeMethod(names, cPointer, "make");
         Pointer_switchDependence = new RuntimeMethod(names, cPointer, "switchDependence");
 
+        BindingProfiler_recompute = new RuntimeMethod(names, cBindingProfiler, "recompute");
+
         Duration_valueOf = new RuntimeMethod(names, cDuration, "valueOf");
 
         StringLocalization_getLocalizedString = new RuntimeMethod(names, cStringLocalization, "getLocalizedString");
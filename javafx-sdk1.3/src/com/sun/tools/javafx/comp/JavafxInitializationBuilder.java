@@ -71,6 +71,8 @@ public class JavafxInitializationBuilder extends JavafxTranslationSupport {
     private final JavafxOptimizationStatistics optStat;
     private final DependencyGraphWriter depGraphWriter;
     private final boolean annoBindees;
+    // -XDprofileBindings: count bound var recomputations with BindingProfiler
+    private final boolean profileBindings;
 
     public static class LiteralInitVarMap {
         private int count = 1;
@@ -130,6 +132,7 @@ public class JavafxInitializationBuilder extends JavafxTranslationSupport {
         optStat = JavafxOptimizationStatistics.instance(context);
         depGraphWriter = DependencyGraphWriter.instance(context);
         annoBindees = options.get("annobindees") != null;
+        profileBindings = options.get("profileBindings") != null;
     }
 
     /**
@@ -234,6 +237,7 @@ public class JavafxInitializationBuilder extends JavafxTranslationSupport {
         if (!isMixinClass) {
             javaCodeMaker.makeAttributeNumbers(classVarInfos, classVarCount);
             javaCodeMaker.makeAttributeFlags(classVarInfos);
+            javaCodeMaker.makeVarFlagsSlab();
             javaCodeMaker.makeAttributeFields(classVarInfos);
             javaCodeMaker.makeAttributeAccessorMethods(classVarInfos);
             javaCodeMaker.makeVarNumMethods();
@@ -2094,6 +2098,11 @@ however this is what we need */
                             addStmt(Var(Flags.FINAL, syms.intType, defs.varFlags_LocalVarName, GetFlags(proxyVarSym)));
                             // Lock cycles.
                             addStmt(FlagChangeStmt(proxyVarSym, defs.varFlagINIT_MASK, defs.varFlagINIT_PENDING));
+
+                            if (profileBindings) {
+                                // BindingProfiler.recompute(receiver, VOFF$var);
+                                addStmt(CallStmt(defs.BindingProfiler_recompute, getReceiverOrThis(varSym), Offset(varSym)));
+                            }
                             
                             // set$var(init/bound expression)   
                             JCExpression initValue = varInfo.boundInit();
@@ -2897,6 +2906,10 @@ however this is what we need */
             for (VarInfo ai : attrInfos) {
                 // Only variables actually declared.
                 if (ai.hasEnumeration()) {
+                    // Packed flags are initialized by the constructor.
+                    if (isPackedVarFlags(ai.getSymbol())) {
+                        continue;
+                    }
                     // Construct flags var.
                     Name name = attributeFlagsName(ai.getSymbol());
                     // Determine access flags.
@@ -2932,6 +2945,34 @@ however this is what we need */
             }
         }
 
+        //
+        // This method generates the packed flags slab, and the FXObject accessors
+        // that expose it, in the first class of the hierarchy with packed vars.
+        //
+        public void makeVarFlagsSlab() {
+            if (!declaresVarFlagsSlab(getCurrentClassSymbol())) {
+                return;
+            }
+            Type slabType = new ArrayType(syms.shortType, syms.arrayClass);
+            // public short[] VarFlags$internal$;
+            JavafxVarSymbol slabSym = makeVarSymbol(Flags.PUBLIC, slabType, defs.varFlags_FXObjectFieldName);
+            addDefinition(Var(Flags.PUBLIC, slabType, defs.varFlags_FXObjectFieldName, null, slabSym));
+
+            // public short[] getVarFlags$internal$() { return VarFlags$internal$; }
+            ListBuffer<JCStatement> stmts = ListBuffer.lb();
+            stmts.append(Return(id(slabSym)));
+            MethodSymbol getMethSym = makeMethodSymbol(Flags.PUBLIC, slabType, defs.getVarFlags_FXObjectMethodName, List.<Type>nil());
+            addDefinition(Method(Flags.PUBLIC, slabType, defs.getVarFlags_FXObjectMethodName, List.<JCVariableDecl>nil(), stmts.toList(), getMethSym));
+
+            // public void setVarFlags$internal$(short[] value) { VarFlags$internal$ = value; }
+            stmts = ListBuffer.lb();
+            Name argName = names.fromString("value");
+            JCVariableDecl arg = Param(slabType, argName);
+            stmts.append(Stmt(m().Assign(id(slabSym), id(argName))));
+            MethodSymbol setMethSym = makeMethodSymbol(Flags.PUBLIC, syms.voidType, defs.setVarFlags_FXObjectMethodName, List.<Type>of(slabType));
+            addDefinition(Method(Flags.PUBLIC, syms.voidType, defs.setVarFlags_FXObjectMethodName, List.<JCVariableDecl>of(arg), stmts.toList(), setMethSym));
+        }
+
         //
         // The method constructs the VCNT$ method for the current class.
         //
@@ -3157,6 +3198,7 @@ however this is what we need */
                 makeGetAsMethods(varInfos, varCount);
                 makeSizeMethod(varInfos, varCount);
                 makeSetMethod(varInfos, varCount);
+                makeTypeMethod(varInfos, varCount);
                 makeSeqMethod(varInfos, varCount);
                 makeInvalidateMethod(varInfos, varCount);
                 makeVarChangeBitsMethod(varInfos, varCount);
@@ -4196,6 +4238,25 @@ however this is what we need */
             vcmb.build();
         }
        
+        //
+        // This method constructs the current class's getType$ method.
+        //
+        public void makeTypeMethod(List<VarInfo> attrInfos, int varCount) {
+            VarCaseMethodBuilder vcmb = new VarCaseMethodBuilder(defs.getType_FXObjectMethodName, types.erasure(syms.classType),
+                                                                 attrInfos, varCount) {
+                @Override
+                public void statements() {
+                    if (!varInfo.isOverride()) {
+                        clearDiagPos();
+                        // return Type.class
+                        addStmt(Return(m().Select(makeType(types.erasure(type), true), names._class)));
+                    }
+                }
+            };
+
+            vcmb.build();
+        }
+
         //
         // This method constructs the current class's seq$ method.
         //
@@ -4268,7 +4329,8 @@ however this is what we need */
                 
                 @Override
                 public void statements() {
-                    if (varInfo.needsCloning()) {
+                    // Packed flags are handled by FXBase.varChangeBits$.
+                    if (varInfo.needsCloning() && !isPackedVarFlags(varSym)) {
                         JCExpression clearBits = BITAND(VarFlags(varSym), BITNOT(clearBitsArg()));
                         JCExpression setBits = BITOR(clearBits, setBitsArg());
                         JCExpression assignBits = m().Assign(VarFlags(varSym), flagCast(setBits));
@@ -4568,14 +4630,40 @@ however this is what we need */
                 }
             }
 
+            // Initialize packed flags (see makeAttributeFlags.)
+            ListBuffer<JCStatement> packedInits = ListBuffer.lb();
+            boolean hasPacked = false;
+            for (VarInfo ai : varInfos) {
+                if (ai.hasEnumeration() && !ai.isOverride() && isPackedVarFlags(ai.getSymbol())) {
+                    hasPacked = true;
+                    JCExpression init = initialVarBits(ai);
+                    
+                    if (init != null) {
+                        packedInits.append(Stmt(m().Assign(VarFlags(ai.getSymbol()), init)));
+                    }
+                }
+            }
+            if (hasPacked) {
+                // The first packed class in the hierarchy allocates for all vars.
+                // if (VarFlags$internal$ == null) VarFlags$internal$ = new short[count$()];
+                JCExpression slab = id(defs.varFlags_FXObjectFieldName);
+                JCExpression newSlab = m().NewArray(makeType(syms.shortType), List.of(Call(defs.count_FXObjectMethodName)), null);
+                stmts.append(If(EQnull(slab), Stmt(m().Assign(id(defs.varFlags_FXObjectFieldName), newSlab))));
+                stmts.appendList(packedInits);
+            }
+
             // Update any local flag changes.
             for (VarInfo ai : varInfos) {
                 if (ai.needsCloning() && ai.isOverride()) {
-                    Name flagName = attributeFlagsName(ai.proxyVarSym());
-                    JCExpression update = updateVarBits(ai, id(flagName));
+                    JavafxVarSymbol proxyVarSym = ai.proxyVarSym();
+                    JCExpression flags = isPackedVarFlags(proxyVarSym) ? VarFlags(proxyVarSym) :
+                                                                         id(attributeFlagsName(proxyVarSym));
+                    JCExpression update = updateVarBits(ai, flags);
                     
                     if (update != null) {
-                        stmts.append(Stmt(m().Assign(id(flagName), update)));
+                        JCExpression target = isPackedVarFlags(proxyVarSym) ? VarFlags(proxyVarSym) :
+                                                                              id(attributeFlagsName(proxyVarSym));
+                        stmts.append(Stmt(m().Assign(target, update)));
                     }
                 }
             }
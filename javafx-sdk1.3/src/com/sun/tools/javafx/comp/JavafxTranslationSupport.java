@@ -67,6 +67,7 @@ import com.sun.tools.mjavac.tree.JCTree.JCCatch;
 import com.sun.tools.mjavac.util.Options;
 import java.util.Set;
 import java.util.HashSet;
+import javax.tools.JavaFileObject;
 
 /**
  * Common support routines needed for translation
@@ -85,6 +86,8 @@ public abstract class JavafxTranslationSupport {
     protected final JavafxTypes types;
     protected final Options options;
     protected final JavafxPreTranslationSupport preTrans;
+    // -XDpackedVarFlags: keep instance var flags in FXBase.VarFlags$internal$
+    protected final boolean packedVarFlags;
 
     /*
      * other instance information
@@ -102,6 +105,7 @@ public abstract class JavafxTranslationSupport {
         defs = JavafxDefs.instance(context);
         options = Options.instance(context);
         preTrans = JavafxPreTranslationSupport.instance(context);
+        packedVarFlags = options.get("packedVarFlags") != null;
 
         syntheticNameCounter = 0;
     }
@@ -508,6 +512,68 @@ public abstract class JavafxTranslationSupport {
     Name attributeFlagsName(Symbol sym) {
         return prefixedAttributeName(sym, flags_AttributeFieldPrefix);
     }
+
+    /**
+     * Are the flags of this var kept in the per-instance VarFlags$internal$
+     * array, indexed by VOFF$, rather than in a VFLGS$ field of its own?
+     * Only instance vars of non-mixin FXBase subclasses are packed.  Classes
+     * being compiled are packed if -XDpackedVarFlags is set; classes read
+     * from class files are packed if they have no VFLGS$ field for the var.
+     */
+    boolean isPackedVarFlags(Symbol sym) {
+        Symbol owner = sym.owner;
+        if (sym.isStatic() || owner == null || owner.kind != Kinds.TYP ||
+            JavafxAnalyzeClass.isMixinClass(owner) ||
+            !types.isSubtype(types.erasure(owner.type), syms.javafx_FXBaseType)) {
+            return false;
+        }
+        JavaFileObject classfile = ((ClassSymbol)owner).classfile;
+        if (classfile != null && classfile.getKind() == JavaFileObject.Kind.CLASS) {
+            return owner.members().lookup(attributeFlagsName(sym)).scope == null;
+        }
+        return packedVarFlags;
+    }
+
+    /**
+     * Does this class declare the VarFlags$internal$ slab?  Only the first
+     * class in the hierarchy with packed vars of its own declares it, so
+     * classes without packed vars, and FXBase itself, carry no slab.
+     */
+    boolean declaresVarFlagsSlab(ClassSymbol csym) {
+        return hasOwnPackedVarFlags(csym) && !hasVarFlagsSlab(types.supertype(csym.type).tsym);
+    }
+
+    /**
+     * Does this class, or a superclass, declare the VarFlags$internal$ slab?
+     * Classes read from class files are checked for the field itself.
+     */
+    private boolean hasVarFlagsSlab(Symbol sym) {
+        if (!(sym instanceof ClassSymbol)) {
+            return false;
+        }
+        ClassSymbol csym = (ClassSymbol)sym;
+        JavaFileObject classfile = csym.classfile;
+        boolean declares;
+        if (classfile != null && classfile.getKind() == JavaFileObject.Kind.CLASS) {
+            declares = csym.members().lookup(defs.varFlags_FXObjectFieldName).scope != null;
+        } else {
+            declares = hasOwnPackedVarFlags(csym);
+        }
+        return declares || hasVarFlagsSlab(types.supertype(csym.type).tsym);
+    }
+
+    // Mirrors the packed vars whose flags the constructor initializes.
+    private boolean hasOwnPackedVarFlags(ClassSymbol csym) {
+        for (Scope.Entry e = csym.members().elems; e != null && e.sym != null; e = e.sibling) {
+            Symbol sym = e.sym;
+            if (sym instanceof JavafxVarSymbol && sym.owner == csym &&
+                (sym.flags() & JavafxFlags.OVERRIDE) == 0 &&
+                ((JavafxVarSymbol)sym).needsEnumeration() && isPackedVarFlags(sym)) {
+                return true;
+            }
+        }
+        return false;
+    }
     
     Name attributeValueName(Symbol sym) {
         return prefixedAttributeName(sym, value_AttributeFieldPrefix);
@@ -1743,11 +1809,15 @@ public abstract class JavafxTranslationSupport {
         public JCExpression VarFlags(Symbol sym) {
             assert sym instanceof JavafxVarSymbol : "Expect a var symbol, got " + sym;
             JavafxVarSymbol varSym = (JavafxVarSymbol)sym;
-            return Select(getReceiver(varSym), attributeFlagsName(varSym));
+            return VarFlags(getReceiver(varSym), varSym);
         }
         public JCExpression VarFlags(JCExpression selector, Symbol sym) {
             assert sym instanceof JavafxVarSymbol : "Expect a var symbol, got " + sym;
             JavafxVarSymbol varSym = (JavafxVarSymbol)sym;
+            if (isPackedVarFlags(varSym)) {
+                // selector.VarFlags$internal$[VOFF$name]
+                return m().Indexed(Select(selector, defs.varFlags_FXObjectFieldName), Offset(varSym));
+            }
             return Select(selector, attributeFlagsName(varSym));
         }
 
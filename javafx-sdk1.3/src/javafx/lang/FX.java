@@ -24,6 +24,7 @@
 package javafx.lang;
 
 import java.util.Vector;
+import com.sun.javafx.runtime.DependentsManager;
 import com.sun.javafx.runtime.Entry;
 import com.sun.javafx.functions.Function0;
 import com.sun.javafx.runtime.SystemProperties;
@@ -278,6 +279,39 @@ public class FX {
         }
     }
 
+    /**
+     * Executes {@code action} as a single batch of changes.  The
+     * notifications that changes to the variables of an object send to binds
+     * in other objects are collected while the action runs and delivered
+     * when it completes.  Such a bind is then updated once for each
+     * variable it depends on that was changed, however many times that
+     * variable was assigned, and a bound sequence sees all the changes made
+     * to a sequence it depends on as a single replacement.  Batches may be
+     * nested; notifications are delivered when the outermost batch
+     * completes.
+     * <p />
+     * Binds on variables of the same script or object are not batched: they
+     * are updated as soon as the variable is assigned.  The others are
+     * updated when the batch completes, so reading them inside the action
+     * gives their value from before the batch.
+     *
+     * @param  action of type {@code function():Void} that performs the changes.
+     *
+     * @throws NullPointerException if the action is null
+     * @profile common
+     */
+    public static void batch(Function0<Void> action) {
+        if (action == null) {
+            throw new NullPointerException("Action function can not be null");
+        }
+        DependentsManager.beginBatch();
+        try {
+            action.invoke$(null, null, null);
+        } finally {
+            DependentsManager.endBatch();
+        }
+    }
+
     /**
      * For JavaFX Script applications that are started on the command
      * line,running application. This will return Unamed Arguments
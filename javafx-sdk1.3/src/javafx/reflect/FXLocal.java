@@ -378,6 +378,7 @@ public class FXLocal {
             "getAsLong$",
             "getAsShort$",
             "getDepChain$internal$",
+            "getVarFlags$internal$",
             "getThisRef$internal$",
             "getListenerCount$",
             "getType$",
@@ -392,6 +393,7 @@ public class FXLocal {
             "removeDependent$",
             "restrictSet$",
             "setDepChain$internal$",
+            "setVarFlags$internal$",
             "setThisRef$internal$",
             "switchDependence$",
             "userInit$",
@@ -381,3 +381,94 @@ public class Sequences {
         return com.sun.javafx.runtime.sequence.Sequences.shuffle(seq);
     }
 
+    /**
+     * Sorts the specified sequence of objects into ascending order, like
+     * {@code sort(seq)}, using several threads if the sequence is large.
+     * <p />
+     * Sequences with at least {@code javafx.sequence.parallelThreshold}
+     * elements (a system property, 100000 by default) are split into parts
+     * that are sorted and merged on a pool of worker threads; smaller
+     * sequences are sorted on the calling thread.
+     *
+     * @param seq The sequence to be sorted.
+     * @return The sorted sequence.
+     *
+     * @profile common
+     */
+    public function parallelSort(seq: Comparable[]): Comparable[] {
+        return com.sun.javafx.runtime.sequence.ParallelSequences.sort(seq);
+    }
+
+    /**
+     * Returns the sum of the elements of the specified sequence, using
+     * several threads if the sequence is large (see {@code parallelSort}).
+     * The elements are added in blocks of a fixed size, and the block sums
+     * in order, so the result is the same however many threads are used.
+     *
+     * @param seq The sequence to be summed.
+     * @return The sum of the elements, or 0 if the sequence is empty.
+     *
+     * @profile common
+     */
+    public function parallelSum(seq: Number[]): Double {
+        return com.sun.javafx.runtime.sequence.ParallelSequences.sum(seq);
+    }
+
+    /**
+     * Returns the smallest element of the specified sequence, using several
+     * threads if the sequence is large (see {@code parallelSort}).
+     *
+     * @param seq The sequence to be searched; it must not be empty.
+     * @return The smallest element.
+     *
+     * @profile common
+     */
+    public function parallelMin(seq: Number[]): Double {
+        return com.sun.javafx.runtime.sequence.ParallelSequences.min(seq);
+    }
+
+    /**
+     * Returns the largest element of the specified sequence, using several
+     * threads if the sequence is large (see {@code parallelSort}).
+     *
+     * @param seq The sequence to be searched; it must not be empty.
+     * @return The largest element.
+     *
+     * @profile common
+     */
+    public function parallelMax(seq: Number[]): Double {
+        return com.sun.javafx.runtime.sequence.ParallelSequences.max(seq);
+    }
+
+    /**
+     * Searches the specified sequence for the specified object, like
+     * {@code indexOf(seq, key)}, using several threads if the sequence is
+     * large (see {@code parallelSort}).
+     *
+     * @param seq The sequence to be searched.
+     * @param key The value to be searched for.
+     * @return Index of the first element equal to key, or -1.
+     *
+     * @profile common
+     */
+    public function parallelIndexOf(seq: Object[], key: Object): Integer {
+        return com.sun.javafx.runtime.sequence.ParallelSequences.indexOf(seq, key);
+    }
+
+    /**
+     * Returns the elements of the specified sequence for which the predicate
+     * returns {@code true}, in the same order, using several threads if the
+     * sequence is large (see {@code parallelSort}).
+     * <p />
+     * The predicate is called concurrently from several threads, so it must
+     * not modify or bind to any variables.
+     *
+     * @param seq The sequence to be filtered.
+     * @param predicate The function selecting the elements to keep.
+     * @return The selected elements.
+     *
+     * @profile common
+     */
+    public function parallelFilter(seq: Object[], predicate: function(Object): Boolean): Object[] {
+        return com.sun.javafx.runtime.sequence.ParallelSequences.filter(seq, predicate);
+    }
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.javafx.runtime;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import com.sun.javafx.runtime.sequence.IntArraySequence;
+import com.sun.javafx.runtime.sequence.Sequence;
+import com.sun.javafx.runtime.sequence.Sequences;
+
+/**
+ * Benchmarks of the binding runtime, printed as CSV so that runs against
+ * different builds of javafxrt.jar can be compared.  The bind workloads are
+ * the functions of test/bench/fx/BindFixtures.fx; replaceSlice is measured
+ * here.  From test/bench, build and run as
+ * <pre>
+ * javafxc -d classes fx/BindFixtures.fx
+ * javac -cp javafxrt.jar -d classes com/sun/javafx/runtime/*.java
+ * java -cp javafxrt.jar:classes com.sun.javafx.runtime.BindingBench [benchmark...]
+ * </pre>
+ * With no benchmarks named, all of them are run.  Each benchmark is run
+ * over a range of sizes, WARMUP times and then RUNS times; a line is printed
+ * for each size, with the median and the fastest time per operation in
+ * nanoseconds:
+ * <pre>
+ * benchmark,size,ops,median_ns,min_ns
+ * chain,10,200000,504.2,479.2
+ * </pre>
+ * An operation is one change and the reads that follow it, one object
+ * literal, or one replaceSlice.  Sizes are the depth of a chain or of a
+ * stack of diamonds, the number of dependents of one var, the number of
+ * elements of a sequence, and are not used by objectLiterals.
+ */
+public final class BindingBench {
+    private BindingBench() {
+    }
+
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+
+    private static final String FIXTURES = "BindFixtures";
+
+    /** A benchmark: its name, its sizes and how many operations to time at each. */
+    private static abstract class Bench {
+        final String name;
+        final int[] sizes;
+
+        Bench(String name, int... sizes) {
+            this.name = name;
+            this.sizes = sizes;
+        }
+
+        /** The number of operations to time at a size. */
+        abstract int ops(int size);
+
+        /** Do ops operations, and return the time they took in nanoseconds. */
+        abstract long run(int size, int ops) throws Exception;
+    }
+
+    /** A benchmark that calls a function of the fixtures as (size, ops) or (ops). */
+    private static final class FixtureBench extends Bench {
+        private final int work;
+        private final boolean perElement;
+        private Method method;
+
+        /**
+         * Time work operations at each size or, if perElement, about work
+         * updates of single elements, which is work / size operations.
+         */
+        FixtureBench(String name, int work, boolean perElement, int... sizes) {
+            super(name, sizes);
+            this.work = work;
+            this.perElement = perElement;
+        }
+
+        int ops(int size) {
+            return perElement ? Math.max(10, work / size) : work;
+        }
+
+        long run(int size, int ops) throws Exception {
+            if (method == null) {
+                Class<?> cls = Class.forName(FIXTURES);
+                method = sizes.length == 0 ? cls.getMethod(name, int.class)
+                        : cls.getMethod(name, int.class, int.class);
+            }
+            try {
+                Object t = sizes.length == 0 ? method.invoke(null, ops) : method.invoke(null, size, ops);
+                return ((Long) t).longValue();
+            } catch (InvocationTargetException ex) {
+                Throwable cause = ex.getCause();
+                throw cause instanceof Exception ? (Exception) cause : ex;
+            }
+        }
+    }
+
+    /**
+     * replaceSlice of one element of an int sequence.  If shared, the
+     * sequence is shared before each change, as if an alias had been taken,
+     * so each change copies it, or chunks it once it is large enough;
+     * otherwise it is changed in place.
+     */
+    private static final class ReplaceSliceBench extends Bench {
+        private final boolean shared;
+
+        ReplaceSliceBench(String name, boolean shared) {
+            super(name, 1000, 10000, 100000, 1000000);
+            this.shared = shared;
+        }
+
+        int ops(int size) {
+            return shared ? Math.max(10, 20000000 / size) : 1000000;
+        }
+
+        long run(int size, int ops) {
+            int[] values = new int[size];
+            for (int i = 0; i < size; i++)
+                values[i] = i;
+            Sequence<? extends Integer> seq = new IntArraySequence(values, 0, size);
+            seq.incrementSharing();
+            Sequence<? extends Integer> one = new IntArraySequence(new int[] { 1 }, 0, 1);
+            long sum = 0;
+            long t0 = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                int k = (int) ((i * 7919L) % size);
+                if (shared)
+                    seq.incrementSharing();
+                seq = Sequences.replaceSlice(seq, one, k, k + 1);
+                sum += seq.getAsInt(k);
+            }
+            long t = System.nanoTime() - t0;
+            if (sum != ops)
+                throw new IllegalStateException("replaceSlice lost updates");
+            return t;
+        }
+    }
+
+    private static final Bench[] BENCHES = {
+        new FixtureBench("chain", 2000000, true, 1, 10, 100, 1000),
+        new FixtureBench("diamond", 2000000, true, 1, 10, 100),
+        new FixtureBench("fanOut", 2000000, true, 1, 10, 1000),
+        new FixtureBench("boundFor", 200000, false, 1000, 10000, 100000, 1000000),
+        new FixtureBench("objectLiterals", 1000000, false),
+        new ReplaceSliceBench("replaceSliceUnshared", false),
+        new ReplaceSliceBench("replaceSliceShared", true),
+    };
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("benchmark,size,ops,median_ns,min_ns");
+        for (Bench bench : BENCHES) {
+            if (args.length > 0 && !Arrays.asList(args).contains(bench.name))
+                continue;
+            int[] sizes = bench.sizes.length == 0 ? new int[] { 0 } : bench.sizes;
+            for (int size : sizes) {
+                int ops = bench.ops(size);
+                for (int i = 0; i < WARMUP; i++)
+                    bench.run(size, ops);
+                double[] times = new double[RUNS];
+                for (int i = 0; i < RUNS; i++) {
+                    long t = bench.run(size, ops);
+                    if (t < 0)
+                        throw new IllegalStateException(bench.name + " lost updates");
+                    times[i] = (double) t / ops;
+                }
+                Arrays.sort(times);
+                System.out.println(String.format("%s,%d,%d,%.1f,%.1f",
+                        bench.name, size, ops, times[RUNS / 2], times[0]));
+            }
+        }
+    }
+}
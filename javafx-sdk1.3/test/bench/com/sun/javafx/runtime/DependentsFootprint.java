@@ -0,0 +1,111 @@
+/*
+ * Copyright 2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.javafx.runtime;
+
+/**
+ * Measures the heap used per binding edge, with the linked Dep trie and
+ * with the packed chains used for bindees with few dependents.  It is in
+ * the runtime package, to reach Dep, but is not part of the runtime; compile
+ * it against javafxrt.jar and run as
+ * <pre>
+ * java -cp javafxrt.jar:bench com.sun.javafx.runtime.DependentsFootprint [bindees] [edges per bindee...]
+ * </pre>
+ * For each number of edges per bindee, the given number of bindees (200000
+ * by default) each get edges from that many binders, on distinct vars.
+ * The heap in use is measured after a full collection before and after the
+ * edges are added, so the objects themselves are not counted, but the
+ * WeakBinderRefs created for them are.  Linked edges are added as
+ * addDependent does when {@code javafx.binding.compactDeps} is false;
+ * packed edges are added by addDependent, so they are only measured when
+ * that property is true, the default.  Bindees with more edges than
+ * {@link CompactDepChain#MAX_EDGES} are always linked.
+ */
+public final class DependentsFootprint {
+    private DependentsFootprint() {
+    }
+
+    private static final class Node extends FXBase {
+        @Override
+        public int count$() {
+            return CompactDepChain.MAX_EDGES + 1;
+        }
+    }
+
+    public static void main(String[] args) {
+        int bindees = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int[] fanOuts = { 1, 2, 4, 8 };
+        if (args.length > 1) {
+            fanOuts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++)
+                fanOuts[i - 1] = Integer.parseInt(args[i]);
+        }
+        System.out.println("edges/bindee  linked bytes/edge  packed bytes/edge");
+        for (int edges : fanOuts) {
+            double linked = measure(bindees, edges, false);
+            String packed = DependentsManager.compactDeps
+                    ? String.format("%.1f", measure(bindees, edges, true)) : "-";
+            System.out.println(String.format("%12d  %17.1f  %17s", edges, linked, packed));
+        }
+    }
+
+    /**
+     * Bytes per edge for bindees each bound by edges binders.  Binder b
+     * depends on bindees b, b+1, ... so each binder also has edges bindees.
+     */
+    private static double measure(int count, int edges, boolean packed) {
+        Node[] bindees = new Node[count];
+        Node[] binders = new Node[count];
+        for (int i = 0; i < count; i++) {
+            bindees[i] = new Node();
+            binders[i] = new Node();
+        }
+        long before = usedHeap();
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < edges; j++) {
+                FXObject binder = binders[(i + j) % count];
+                if (packed) {
+                    DependentsManager.addDependent(bindees[i], j, binder, i);
+                } else {
+                    Dep dep = Dep.newDependency(binder, i);
+                    dep.linkToBindee(bindees[i], j);
+                }
+            }
+        }
+        long after = usedHeap();
+        // Keep everything reachable until measured.
+        if (bindees[count - 1].getDepChain$internal$() == null || binders[0] == null)
+            throw new IllegalStateException();
+        return (double) (after - before) / ((long) count * edges);
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.javafx.runtime;
+
+import com.sun.javafx.runtime.sequence.Sequences;
+
+/**
+ * Measures the time notifyDependents takes per notified edge, with the
+ * linked Dep trie and with the packed chains used for bindees with few
+ * dependents.  Like {@link DependentsFootprint}, it is compiled against
+ * javafxrt.jar and run as
+ * <pre>
+ * java -cp javafxrt.jar:bench com.sun.javafx.runtime.NotifyThroughput [edges] [edges per bindee...]
+ * </pre>
+ * For each number of edges per bindee (1, 10 and 1000 by default), enough
+ * bindees are made to have about the given number of edges in all (100000
+ * by default), and each bindee in turn is invalidated and then triggered,
+ * as a change of one of its vars does.  The binders count the updates and
+ * do nothing else, so the time is that of finding and calling them.
+ * Packed edges are only measured when {@code javafx.binding.compactDeps} is
+ * true, the default, and for at most {@link CompactDepChain#MAX_EDGES}
+ * edges per bindee.
+ */
+public final class NotifyThroughput {
+    private NotifyThroughput() {
+    }
+
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+
+    private static final class Node extends FXBase {
+        int updates;
+
+        @Override
+        public int count$() {
+            return 1;
+        }
+
+        @Override
+        public boolean update$(FXObject src, int depNum, int startPos, int endPos, int newLength, int phase) {
+            updates++;
+            return true;
+        }
+    }
+
+    public static void main(String[] args) {
+        int total = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int[] fanOuts = { 1, 10, 1000 };
+        if (args.length > 1) {
+            fanOuts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++)
+                fanOuts[i - 1] = Integer.parseInt(args[i]);
+        }
+        System.out.println("edges/bindee  linked ns/edge  packed ns/edge");
+        for (int edges : fanOuts) {
+            double linked = measure(total, edges, false);
+            String packed = DependentsManager.compactDeps && edges <= CompactDepChain.MAX_EDGES
+                    ? String.format("%.1f", measure(total, edges, true)) : "-";
+            System.out.println(String.format("%12d  %14.1f  %14s", edges, linked, packed));
+        }
+    }
+
+    /**
+     * Nanoseconds per notified edge, counting both phases, for bindees each
+     * bound by edges binders on their only var.
+     */
+    private static double measure(int total, int edges, boolean packed) {
+        int count = Math.max(1, total / edges);
+        Node[] bindees = new Node[count];
+        Node[] binders = new Node[edges];
+        for (int j = 0; j < edges; j++)
+            binders[j] = new Node();
+        for (int i = 0; i < count; i++) {
+            bindees[i] = new Node();
+            for (int j = 0; j < edges; j++) {
+                if (packed) {
+                    DependentsManager.addDependent(bindees[i], 0, binders[j], i);
+                } else {
+                    Dep dep = Dep.newDependency(binders[j], i);
+                    dep.linkToBindee(bindees[i], 0);
+                }
+            }
+        }
+        for (int r = 0; r < WARMUP_ROUNDS; r++)
+            notifyAll(bindees);
+        int before = updates(binders);
+        long start = System.nanoTime();
+        for (int r = 0; r < ROUNDS; r++)
+            notifyAll(bindees);
+        long time = System.nanoTime() - start;
+        int notified = updates(binders) - before;
+        if (notified != 2 * ROUNDS * count * edges)
+            throw new IllegalStateException("expected " + 2 * ROUNDS * count * edges + " updates, got " + notified);
+        return (double) time / notified;
+    }
+
+    private static void notifyAll(Node[] bindees) {
+        final int undefined = Sequences.UNDEFINED_MARKER_INT;
+        for (Node bindee : bindees) {
+            DependentsManager.notifyDependents(bindee, 0, 0, undefined, undefined, FXObject.PHASE_TRANS$CASCADE_INVALIDATE);
+            DependentsManager.notifyDependents(bindee, 0, 0, undefined, undefined, FXObject.PHASE_TRANS$CASCADE_TRIGGER);
+        }
+    }
+
+    private static int updates(Node[] binders) {
+        int sum = 0;
+        for (Node binder : binders)
+            sum += binder.updates;
+        return sum;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Workloads for com.sun.javafx.runtime.BindingBench.  Each function builds
+ * its object graph, then changes it iters times and reads the result, and
+ * returns the nanoseconds taken by the changes and reads only.  The values
+ * read are summed, and the sum is checked, so that the work can't be
+ * skipped.
+ */
+
+import java.lang.System;
+
+class Cell {
+    var v: Integer;
+}
+
+class Holder {
+    var xs: Integer[];
+    def ys = bind for (x in xs) x * 2;
+}
+
+class Base {
+    var a = 1;
+    var b = 2;
+    var c: Integer;
+}
+
+class Derived extends Base {
+    override var a = 3;
+    var d = 4;
+    var e: Number;
+}
+
+function elapsed(t0: Long, sum: Integer): Long {
+    def t = System.nanoTime() - t0;
+    if (sum == 0x7fffffff) -1 else t
+}
+
+/** A chain of depth cells, each bound to the one before it. */
+public function chain(depth: Integer, iters: Integer): Long {
+    def head = Cell { v: 0 };
+    var last = head;
+    for (k in [1..<depth]) {
+        def prev = last;
+        last = Cell { v: bind prev.v + 1 };
+    }
+    def tail = last;
+    var sum = 0;
+    def t0 = System.nanoTime();
+    for (i in [1..iters]) {
+        head.v = i;
+        sum += tail.v;
+    }
+    elapsed(t0, sum)
+}
+
+/** depth diamonds stacked on each other: each joins two cells bound to the one above. */
+public function diamond(depth: Integer, iters: Integer): Long {
+    def top = Cell { v: 0 };
+    var last = top;
+    for (k in [1..depth]) {
+        def prev = last;
+        def left = Cell { v: bind prev.v + 1 };
+        def right = Cell { v: bind prev.v * 2 };
+        last = Cell { v: bind (left.v + right.v) mod 1000 };
+    }
+    def bottom = last;
+    var sum = 0;
+    def t0 = System.nanoTime();
+    for (i in [1..iters]) {
+        top.v = i;
+        sum += bottom.v;
+    }
+    elapsed(t0, sum)
+}
+
+/** width cells bound to one source, all read after each change. */
+public function fanOut(width: Integer, iters: Integer): Long {
+    def src = Cell { v: 0 };
+    def cells = for (k in [1..width]) Cell { v: bind src.v + k };
+    var sum = 0;
+    def t0 = System.nanoTime();
+    for (i in [1..iters]) {
+        src.v = i;
+        for (c in cells)
+            sum += c.v;
+    }
+    elapsed(t0, sum)
+}
+
+/** A bound for over size elements, one of which is set and read back each time. */
+public function boundFor(size: Integer, iters: Integer): Long {
+    def h = Holder { xs: [1..size] };
+    var sum = h.ys[size - 1];
+    def t0 = System.nanoTime();
+    for (i in [1..iters]) {
+        def k = (i * 7919) mod size;
+        h.xs[k] = i;
+        sum += h.ys[k];
+    }
+    elapsed(t0, sum)
+}
+
+/** iters object literals of a subclass, which initialize vars through makeInitMap$. */
+public function objectLiterals(iters: Integer): Long {
+    var sum = 0;
+    def t0 = System.nanoTime();
+    for (i in [1..iters]) {
+        def obj = Derived { c: i, d: i, e: 0.5 };
+        sum += obj.a + obj.c + obj.d;
+    }
+    elapsed(t0, sum)
+}
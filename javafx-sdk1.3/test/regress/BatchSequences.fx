@@ -0,0 +1,38 @@
+/*
+ * Regression test: FX.batch delivers exact sequence changes to bound
+ * sequences of other objects, and to for-expressions over local vars.
+ *
+ * @test
+ * @run
+ */
+
+class Holder {
+    var items: Integer[];
+    var k = 2;
+}
+
+def h = Holder { items: [1, 2, 3, 4, 5] };
+def total = bind for (i in h.items) i * 2 on replace old[lo..hi] = nv {
+    println("total replace [{lo}..{hi}] = {nv.toString()}");
+};
+
+FX.batch(function():Void { h.items[0] = 9; h.items[4] = 8; });
+println("total = {total.toString()}");
+FX.batch(function():Void { insert 7 before h.items[1]; delete h.items[3]; });
+println("total = {total.toString()}");
+FX.batch(function():Void { delete h.items[3]; insert 5 before h.items[0]; h.items[2] = 100; });
+println("total = {total.toString()}");
+println("expected {(for (i in h.items) i * 2).toString()}");
+
+// Parts that depend on another var of the holder, changed together with
+// deletions of the elements they were built for.
+def scaled = bind for (i in h.items) i * h.k;
+FX.batch(function():Void { delete h.items[0]; h.k = 3; delete h.items[0..1]; });
+println("scaled = {scaled.toString()} expected {(for (i in h.items) i * h.k).toString()}");
+
+var local = [1, 2, 3, 4, 5];
+def mapped = bind for (x in local) x + 1 on replace old[lo..hi] = nv {
+    println("mapped replace [{lo}..{hi}] = {nv.toString()}");
+};
+FX.batch(function():Void { local[3] = 99; });
+println("mapped = {mapped.toString()}");
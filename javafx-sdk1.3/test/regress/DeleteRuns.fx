@@ -0,0 +1,32 @@
+/*
+ * Regression test: deleting a value from a sequence replaces each run of
+ * deleted elements on its own, so a bound for-expression keeps the
+ * elements that stay.
+ *
+ * @test
+ * @run
+ */
+
+var made = 0;
+
+class Node {
+    var v: Integer;
+    init { made++ }
+}
+
+var seq = [1, 0, 2, 3, 0, 4, 5, 0, 6] on replace old[lo..hi] = nv {
+    println("seq replace [{lo}..{hi}] = {nv.toString()}");
+};
+def nodes = bind for (x in seq) Node { v: x };
+println("nodes = {sizeof nodes}");
+
+made = 0;
+delete 0 from seq;
+println("seq = {seq.toString()}");
+println("nodes = {sizeof nodes} made = {made}");
+
+var runs = [1, 0, 0, 2, 0] on replace old[lo..hi] = nv {
+    println("runs replace [{lo}..{hi}] = {nv.toString()}");
+};
+delete 0 from runs;
+println("runs = {runs.toString()}");
@@ -0,0 +1,43 @@
+/*
+ * Regression test: a class that extends the SideEffectFree marker may have
+ * the invalidations of its bound vars fanned out to worker threads, and
+ * the results are the same as when they are made on one thread.
+ *
+ * @test
+ * @run
+ */
+
+import java.lang.System;
+import com.sun.javafx.runtime.SideEffectFree;
+
+// Set before the first bindee with many dependents is notified, which is
+// when the threshold is read.
+System.setProperty("javafx.binding.parallelThreshold", "100");
+
+class Source {
+    var v: Integer;
+}
+
+class Row extends SideEffectFree {
+    var src: Source;
+    var k: Integer;
+    def value = bind src.v * 1000 + k;
+}
+
+def src = Source { v: 1 };
+def rows = for (k in [0..<1000]) Row { src: src, k: k };
+
+function check(): Void {
+    var bad = 0;
+    for (row in rows) {
+        if (row.value != src.v * 1000 + row.k)
+            bad++;
+    }
+    println("v = {src.v} bad = {bad}");
+}
+
+check();
+for (i in [2..5]) {
+    src.v = i;
+    check();
+}